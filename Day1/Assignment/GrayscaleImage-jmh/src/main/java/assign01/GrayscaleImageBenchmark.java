@@ -0,0 +1,200 @@
+package assign01;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every public GrayscaleImage operation on synthetic images from thumbnail size to 50 MP
+ * Run through BenchmarkRunner to get the GC profiler's allocation rate next to each score
+ * cropped, squarified and mirrored return views, so they are also measured followed by
+ * compacted(), which is what it costs to actually copy the pixels out
+ * The image caches its sum, so operations that need it run on a fresh view (see uncached()) to
+ * include the averaging pass every time, averageBrightnessCached measures the cached read
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "--add-modules", "jdk.incubator.vector"})
+public class GrayscaleImageBenchmark {
+
+    /** width x height: thumbnail, VGA, 1080p, 12 MP photo, 50 MP scan */
+    @Param({"256x256", "640x480", "1920x1080", "4000x3000", "8660x5773"})
+    public String size;
+
+    @Param({"BYTE", "DOUBLE"})
+    public PixelFormat format;
+
+    private double[][] data;
+    private GrayscaleImage image;
+    private GrayscaleImage same;
+    private File png;
+    private URL pngUrl;
+    private File output;
+    private Path pgm;
+    private Path pgmOutput;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] dims = size.split("x");
+        int width = Integer.parseInt(dims[0]);
+        int height = Integer.parseInt(dims[1]);
+
+        // a smooth gradient with some texture, so PNG encoding does real work
+        data = new double[height][width];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                data[row][col] = (row * 7 + col * 3 + (row * col) % 13) % 256;
+            }
+        }
+        image = new GrayscaleImage(data, format);
+        same = new GrayscaleImage(data, format);
+
+        png = Files.createTempFile("bench", ".png").toFile();
+        image.savePNG(png);
+        pngUrl = png.toURI().toURL();
+        output = Files.createTempFile("bench-out", ".png").toFile();
+        pgm = Files.createTempFile("bench", ".pgm");
+        image.savePGM(pgm);
+        pgmOutput = Files.createTempFile("bench-out", ".pgm");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        png.delete();
+        output.delete();
+        pgm.toFile().delete();
+        pgmOutput.toFile().delete();
+    }
+
+    @Benchmark
+    public GrayscaleImage constructFromArray() {
+        return new GrayscaleImage(data, format);
+    }
+
+    @Benchmark
+    public GrayscaleImage constructFromUrl() throws IOException {
+        return new GrayscaleImage(pngUrl);
+    }
+
+    /**
+     * @return a new view of the whole image, views share pixels but not the cached sum, hash or tables
+     */
+    private GrayscaleImage uncached() {
+        return image.cropped(0, 0, image.width(), image.height());
+    }
+
+    @Benchmark
+    public double averageBrightness() {
+        return uncached().averageBrightness();
+    }
+
+    @Benchmark
+    public double averageBrightnessCached() {
+        return image.averageBrightness();
+    }
+
+    @Benchmark
+    public GrayscaleImage normalized() {
+        return uncached().normalized();
+    }
+
+    @Benchmark
+    public GrayscaleImage mirrored() {
+        return image.mirrored();
+    }
+
+    @Benchmark
+    public GrayscaleImage mirroredCompacted() {
+        return image.mirrored().compacted();
+    }
+
+    @Benchmark
+    public GrayscaleImage cropped() {
+        return image.cropped(image.height() / 4, image.width() / 4, image.width() / 2, image.height() / 2);
+    }
+
+    @Benchmark
+    public GrayscaleImage croppedCompacted() {
+        return image.cropped(image.height() / 4, image.width() / 4, image.width() / 2, image.height() / 2).compacted();
+    }
+
+    @Benchmark
+    public GrayscaleImage squarified() {
+        return image.squarified();
+    }
+
+    @Benchmark
+    public GrayscaleImage squarifiedCompacted() {
+        return image.squarified().compacted();
+    }
+
+    @Benchmark
+    public boolean equalsSameContent() {
+        return image.equals(same);
+    }
+
+    @Benchmark
+    public GrayscaleImage cropperChainEager() {
+        return uncached().squarified().normalized().mirrored();
+    }
+
+    @Benchmark
+    public GrayscaleImage cropperChainPipeline() {
+        return uncached().pipeline().squarified().normalized().mirrored().materialize();
+    }
+
+    @Benchmark
+    public File savePNG() throws IOException {
+        image.savePNG(output);
+        return output;
+    }
+
+    @Benchmark
+    public File savePNGFastestDeflate() throws IOException {
+        try (var stream = new FileOutputStream(output)) {
+            image.savePNG(stream, 1);
+        }
+        return output;
+    }
+
+    @Benchmark
+    public Path savePGM() throws IOException {
+        image.savePGM(pgmOutput);
+        return pgmOutput;
+    }
+
+    @Benchmark
+    public GrayscaleImage readPGM() throws IOException {
+        try (var channel = FileChannel.open(pgm)) {
+            return GrayscaleImage.readPGM(channel);
+        }
+    }
+
+    @Benchmark
+    public double mapPGMAndSum() throws IOException {
+        // mapping alone takes constant time, summing touches every page
+        return GrayscaleImage.mapPGM(pgm).averageBrightness();
+    }
+}
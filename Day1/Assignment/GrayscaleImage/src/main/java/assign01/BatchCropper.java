@@ -0,0 +1,283 @@
+package assign01;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Runs the Cropper edit (squarify, normalize, mirror) over many local image files
+ * Decoding, transforming and PNG encoding run as three overlapping stages connected by
+ * bounded queues, so a slow stage applies back-pressure instead of filling the heap
+ * Usage: Cropper --batch <directory | glob | manifest file> [output directory]
+ * A directory processes every file directly inside it, a glob such as "scans/**.jpg" processes
+ * every matching file, and any other file is read as a manifest with one image path per line
+ * (blank lines and lines starting with # are skipped, relative paths are relative to the manifest)
+ * Binary PGM (.pgm) inputs are read without decoding, and memory-mapped if they are larger than MAP_PGM_BYTES
+ * Each image is saved as <output directory>/<name>.png, the output directory defaults to "output"
+ * Inputs that would get the same name (a/x.png and b/x.png, or x.jpg and x.png) are numbered in input order:
+ * x.png, x-2.png, x-3.png and so on
+ */
+public class BatchCropper {
+    /** Number of images allowed to wait between two stages */
+    private static final int QUEUE_CAPACITY = 64;
+    /** PGM files at least this big are mapped, below it a temporary file per result costs more than reading */
+    static final long MAP_PGM_BYTES = 16L << 20;
+
+    /** Marks the end of a queue, passed along once every worker of a stage has finished */
+    private static final Item END = new Item(null, null);
+
+    private record Item(Path source, GrayscaleImage image) {}
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: Cropper --batch <directory | glob | manifest file> [output directory]");
+            return;
+        }
+        Path outputDir = Path.of(args.length > 1 ? args[1] : "output");
+
+        try {
+            List<Path> inputs = listInputs(args[0]);
+            Files.createDirectories(outputDir);
+            new BatchCropper(outputDir).run(inputs);
+        } catch (IOException ex) {
+            System.out.println("Failed to read input list or create output directory: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Expands the batch input argument into the list of image files to process
+     * @param spec a directory, a glob pattern or a manifest file
+     * @return the image paths, in directory, walk or manifest order
+     * @throws IOException if the directory or manifest can't be read
+     */
+    static List<Path> listInputs(String spec) throws IOException {
+        if (spec.chars().anyMatch(c -> "*?[{".indexOf(c) >= 0)) {
+            // walk from the last directory before the first wildcard
+            int wildcard = 0;
+            while ("*?[{".indexOf(spec.charAt(wildcard)) < 0) {
+                wildcard++;
+            }
+            int slash = Math.max(spec.lastIndexOf('/', wildcard), spec.lastIndexOf('\\', wildcard));
+            Path base = Path.of(slash < 0 ? "." : spec.substring(0, slash + 1));
+            var matcher = FileSystems.getDefault().getPathMatcher("glob:" + (slash < 0 ? spec : spec.substring(slash + 1)));
+            try (Stream<Path> files = Files.walk(base)) {
+                return files.filter(Files::isRegularFile)
+                        .filter(path -> matcher.matches(base.relativize(path)))
+                        .sorted()
+                        .toList();
+            }
+        }
+
+        Path path = Path.of(spec);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.list(path)) {
+                return files.filter(Files::isRegularFile).sorted().toList();
+            }
+        }
+
+        Path parent = path.toAbsolutePath().getParent();
+        return Files.readAllLines(path).stream()
+                .map(String::strip)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .map(parent::resolve)
+                .toList();
+    }
+
+    private final Path outputDir;
+    private final AtomicInteger failures = new AtomicInteger();
+
+    public BatchCropper(Path outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    /**
+     * Processes every input and prints how fast each stage went
+     * @param inputs image files to crop
+     */
+    public void run(List<Path> inputs) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        var decoded = new ArrayBlockingQueue<Item>(QUEUE_CAPACITY);
+        var transformed = new ArrayBlockingQueue<Item>(QUEUE_CAPACITY);
+        var done = new ArrayBlockingQueue<Item>(1);
+
+        Map<Path, String> outputs = outputNames(inputs);
+        var sources = new ArrayBlockingQueue<Item>(inputs.size() + 1);
+        for (Path input : inputs) {
+            sources.add(new Item(input, null));
+        }
+        sources.add(END);
+
+        long start = System.nanoTime();
+        // decoding mostly waits on the disk, so it gets cheap virtual threads
+        var decode = new Stage("decode", sources, decoded, 2 * cores, Thread.ofVirtual().factory(),
+                item -> new Item(item.source(), decode(item.source())));
+        var transform = new Stage("transform", decoded, transformed, cores, Thread.ofPlatform().factory(),
+                item -> new Item(item.source(),
+                        item.image().pipeline().squarified().normalized().mirrored().materialize()));
+        var encode = new Stage("encode", transformed, done, cores, Thread.ofPlatform().factory(),
+                item -> {
+                    item.image().savePNG(outputDir.resolve(outputs.get(item.source())).toFile());
+                    return null;
+                });
+        for (Stage stage : List.of(decode, transform, encode)) {
+            stage.start();
+        }
+        try {
+            done.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Processed %d images (%d failed) in %.2f s, %.1f images/s%n",
+                inputs.size(), failures.get(), seconds, (inputs.size() - failures.get()) / seconds);
+        for (Stage stage : List.of(decode, transform, encode)) {
+            stage.report();
+        }
+    }
+
+    /**
+     * Loads an input image. Large PGM files are mapped in place rather than read, smaller ones are read onto
+     * the heap, where results of operations on them stay too instead of each going to a mapped temporary file
+     */
+    static GrayscaleImage decode(Path source) throws IOException {
+        if (!source.getFileName().toString().toLowerCase().endsWith(".pgm")) {
+            return new GrayscaleImage(source);
+        }
+        try (var channel = FileChannel.open(source)) {
+            if (channel.size() >= MAP_PGM_BYTES && Pgm.parse(channel).maxValue() == Pgm.FULL_SCALE) {
+                return GrayscaleImage.mapPGM(source);
+            }
+            return GrayscaleImage.readPGM(channel.position(0));
+        }
+    }
+
+    /**
+     * @return the file name of source with its extension replaced by .png
+     */
+    static String outputName(Path source) {
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return (dot > 0 ? name.substring(0, dot) : name) + ".png";
+    }
+
+    /**
+     * Gives every input its own output file name, numbering the ones outputName would give twice
+     * Names are compared ignoring case, since X.png and x.png are the same file on some file systems
+     * @return the output file name of each distinct input, in input order
+     */
+    static Map<Path, String> outputNames(List<Path> sources) {
+        var names = new LinkedHashMap<Path, String>();
+        var taken = new HashSet<String>();
+        for (Path source : sources) {
+            if (names.containsKey(source)) {
+                continue;
+            }
+            String name = outputName(source);
+            String stem = name.substring(0, name.length() - ".png".length());
+            for (int n = 2; !taken.add(name.toLowerCase(Locale.ROOT)); n++) {
+                name = stem + "-" + n + ".png";
+            }
+            names.put(source, name);
+        }
+        return names;
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        /**
+         * @return the item to pass to the next stage, or null to pass nothing on
+         */
+        Item apply(Item item) throws IOException;
+    }
+
+    /**
+     * A pool of workers taking items from one queue and putting the results on the next
+     * The last worker to see END passes it on, so the next stage shuts down after this one
+     */
+    private final class Stage {
+        private final String name;
+        private final BlockingQueue<Item> input;
+        private final BlockingQueue<Item> output;
+        private final int workers;
+        private final ThreadFactory threads;
+        private final Step step;
+        private final AtomicInteger running;
+        private final AtomicInteger processed = new AtomicInteger();
+        private final AtomicLong busyNanos = new AtomicLong();
+
+        Stage(String name, BlockingQueue<Item> input, BlockingQueue<Item> output, int workers,
+              ThreadFactory threads, Step step) {
+            this.name = name;
+            this.input = input;
+            this.output = output;
+            this.workers = workers;
+            this.threads = threads;
+            this.step = step;
+            this.running = new AtomicInteger(workers);
+        }
+
+        void start() {
+            for (int i = 0; i < workers; i++) {
+                threads.newThread(this::work).start();
+            }
+        }
+
+        private void work() {
+            try {
+                while (true) {
+                    Item item = input.take();
+                    if (item == END) {
+                        input.put(END); // let the other workers of this stage see it too
+                        if (running.decrementAndGet() == 0) {
+                            output.put(END);
+                        }
+                        return;
+                    }
+                    long begin = System.nanoTime();
+                    Item result;
+                    try {
+                        result = step.apply(item);
+                    } catch (Throwable ex) {
+                        // Errors too (e.g. OutOfMemoryError on one huge image): a dead worker would never
+                        // pass END on and run() would wait forever
+                        failures.incrementAndGet();
+                        System.out.println("Failed to " + name + " " + item.source() + ": " + ex.getMessage());
+                        continue;
+                    } finally {
+                        // time spent blocked on a full output queue isn't work
+                        busyNanos.addAndGet(System.nanoTime() - begin);
+                    }
+                    if (result != null) {
+                        output.put(result);
+                    }
+                    processed.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void report() {
+            double busySeconds = busyNanos.get() / 1e9;
+            double perWorker = busySeconds == 0 ? 0 : processed.get() / busySeconds;
+            System.out.printf("  %-9s %7d images, %8.2f s busy, %8.1f images/s per worker, %3d workers%n",
+                    name, processed.get(), busySeconds, perWorker, workers);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package assign01;
+
+/**
+ * Stores each pixel as an unsigned byte, one quarter the size of a float and one eighth of a double
+ */
+final class BytePixelStore extends PixelStore {
+    private final byte[] data;
+
+    BytePixelStore(int size) {
+        data = new byte[size];
+    }
+
+    /**
+     * Takes ownership of data, the caller must not keep writing to it
+     */
+    BytePixelStore(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Rounds to the nearest integer brightness and clamps to 0-255
+     */
+    static byte toByte(double value) {
+        if (!(value > 0)) { // also catches NaN
+            return 0;
+        }
+        if (value >= 255) {
+            return (byte) 255;
+        }
+        return (byte) Math.round(value);
+    }
+
+    @Override
+    PixelFormat format() {
+        return PixelFormat.BYTE;
+    }
+
+    @Override
+    long size() {
+        return data.length;
+    }
+
+    @Override
+    double get(long index) {
+        return data[(int) index] & 0xFF;
+    }
+
+    @Override
+    void set(long index, double value) {
+        data[(int) index] = toByte(value);
+    }
+
+    @Override
+    void readRow(long start, long step, int count, double[] dst) {
+        int base = (int) start;
+        if (step == 1) {
+            for (int i = 0; i < count; i++) {
+                dst[i] = data[base + i] & 0xFF;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                dst[i] = data[(int) (base + i * step)] & 0xFF;
+            }
+        }
+    }
+
+    @Override
+    void readRowBytes(long start, long step, int count, byte[] dst, int dstOffset) {
+        // stored values are already 0-255, so the conversion is a plain copy
+        if (step == 1) {
+            System.arraycopy(data, (int) start, dst, dstOffset, count);
+        } else {
+            int base = (int) start;
+            for (int i = 0; i < count; i++) {
+                dst[dstOffset + i] = data[(int) (base + i * step)];
+            }
+        }
+    }
+
+    @Override
+    void writeRow(long start, int count, double[] src) {
+        int base = (int) start;
+        for (int i = 0; i < count; i++) {
+            data[base + i] = toByte(src[i]);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package assign01;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Applies separable filters to a GrayscaleImage
+ * The general path works on tiles of TILE_ROWS x TILE_COLS output pixels: it filters the tile's rows
+ * (plus the halo the column kernel needs) into a small intermediate buffer that stays in cache, then
+ * filters that buffer's columns into the output. Tiles are independent and run in parallel
+ * When both kernels are boxes, each direction is a running sum over whole rows and then over
+ * strips of columns instead, so the cost per pixel does not depend on the radius
+ */
+final class Convolution {
+    /** Output tile size, the intermediate buffer is about (TILE_ROWS + 2 * radius) * TILE_COLS doubles */
+    static final int TILE_ROWS = 64;
+    static final int TILE_COLS = 256;
+    /** Columns handled together by the vertical box pass */
+    private static final int STRIP_COLS = 256;
+
+    private Convolution() {}
+
+    /**
+     * Filters source with horizontal along rows and vertical along columns, writing row-major into out
+     * @param out a store of at least width * height pixels
+     */
+    static void convolve(GrayscaleImage source, SeparableKernel horizontal, SeparableKernel vertical,
+                         EdgeMode edges, ForkJoinPool pool, PixelStore out) {
+        if (horizontal.isBox() && vertical.isBox()) {
+            boxFilter(source, horizontal.radius(), vertical.radius(), edges, pool, out);
+        } else {
+            tiled(source, horizontal, vertical, edges, pool, out);
+        }
+    }
+
+    private static void tiled(GrayscaleImage source, SeparableKernel horizontal, SeparableKernel vertical,
+                              EdgeMode edges, ForkJoinPool pool, PixelStore out) {
+        int width = source.width();
+        int height = source.height();
+        int tileCols = (width + TILE_COLS - 1) / TILE_COLS;
+        int tileRows = (height + TILE_ROWS - 1) / TILE_ROWS;
+        double[] hWeights = horizontal.weightsUnsafe();
+        double[] vWeights = vertical.weightsUnsafe();
+        int hRadius = horizontal.radius();
+        int vRadius = vertical.radius();
+
+        // each "row" handed out by RowBands is one tile
+        RowBands.forEach(pool, TILE_ROWS * TILE_COLS, tileRows * tileCols, (startTile, endTile) -> {
+            int paddedCols = TILE_COLS + 2 * hRadius;
+            int[] colMap = new int[paddedCols];
+            double[] sourceRow = new double[width];
+            double[] padded = new double[paddedCols];
+            double[] intermediate = new double[(TILE_ROWS + 2 * vRadius) * TILE_COLS];
+            double[] outRow = new double[TILE_COLS];
+
+            for (int tile = startTile; tile < endTile; tile++) {
+                int r0 = (tile / tileCols) * TILE_ROWS;
+                int c0 = (tile % tileCols) * TILE_COLS;
+                int th = Math.min(TILE_ROWS, height - r0);
+                int tw = Math.min(TILE_COLS, width - c0);
+
+                // which source column each padded position reads, and the span of columns to fetch
+                int spanStart = width;
+                int spanEnd = 0;
+                for (int k = 0; k < tw + 2 * hRadius; k++) {
+                    colMap[k] = edges.resolve(c0 - hRadius + k, width);
+                    if (colMap[k] >= 0) {
+                        spanStart = Math.min(spanStart, colMap[k]);
+                        spanEnd = Math.max(spanEnd, colMap[k] + 1);
+                    }
+                }
+
+                // horizontal pass, into intermediate rows -vRadius .. th + vRadius of the tile
+                for (int k = 0; k < th + 2 * vRadius; k++) {
+                    int base = k * TILE_COLS;
+                    int sourceRowIndex = edges.resolve(r0 - vRadius + k, height);
+                    if (sourceRowIndex < 0) {
+                        Arrays.fill(intermediate, base, base + tw, 0);
+                        continue;
+                    }
+                    source.readRow(sourceRowIndex, spanStart, spanEnd - spanStart, sourceRow);
+                    for (int p = 0; p < tw + 2 * hRadius; p++) {
+                        padded[p] = colMap[p] < 0 ? 0 : sourceRow[colMap[p] - spanStart];
+                    }
+                    for (int x = 0; x < tw; x++) {
+                        double sum = 0;
+                        for (int j = 0; j < hWeights.length; j++) {
+                            sum += hWeights[j] * padded[x + j];
+                        }
+                        intermediate[base + x] = sum;
+                    }
+                }
+
+                // vertical pass, a whole row of the tile at a time so the inner loop is contiguous
+                for (int y = 0; y < th; y++) {
+                    Arrays.fill(outRow, 0, tw, 0);
+                    for (int j = 0; j < vWeights.length; j++) {
+                        double weight = vWeights[j];
+                        int base = (y + j) * TILE_COLS;
+                        for (int x = 0; x < tw; x++) {
+                            outRow[x] += weight * intermediate[base + x];
+                        }
+                    }
+                    out.writeRow((long) (r0 + y) * width + c0, tw, outRow);
+                }
+            }
+        });
+    }
+
+    /**
+     * Box filter with running sums: each output pixel adds the pixel entering the window and
+     * subtracts the one leaving it, so the work per pixel is constant for any radius
+     */
+    private static void boxFilter(GrayscaleImage source, int hRadius, int vRadius, EdgeMode edges,
+                                  ForkJoinPool pool, PixelStore out) {
+        int width = source.width();
+        int height = source.height();
+        PixelStore rowSums = out.allocateLike(PixelFormat.DOUBLE, (long) width * height);
+
+        int[] colMap = new int[width + 2 * hRadius];
+        for (int k = 0; k < colMap.length; k++) {
+            colMap[k] = edges.resolve(k - hRadius, width);
+        }
+        double hNorm = 1.0 / (2 * hRadius + 1);
+        RowBands.forEach(pool, width, height, (startRow, endRow) -> {
+            double[] row = new double[width];
+            double[] padded = new double[colMap.length];
+            double[] result = new double[width];
+            for (int r = startRow; r < endRow; r++) {
+                source.readRow(r, 0, width, row);
+                for (int p = 0; p < padded.length; p++) {
+                    padded[p] = colMap[p] < 0 ? 0 : row[colMap[p]];
+                }
+                double sum = 0;
+                for (int p = 0; p < 2 * hRadius + 1; p++) {
+                    sum += padded[p];
+                }
+                result[0] = sum * hNorm;
+                for (int x = 1; x < width; x++) {
+                    sum += padded[x + 2 * hRadius] - padded[x - 1];
+                    result[x] = sum * hNorm;
+                }
+                rowSums.writeRow((long) r * width, width, result);
+            }
+        });
+
+        int strips = (width + STRIP_COLS - 1) / STRIP_COLS;
+        double vNorm = 1.0 / (2 * vRadius + 1);
+        // each "row" handed out by RowBands is one strip of columns
+        int stripPixels = (int) Math.min(Integer.MAX_VALUE, (long) height * STRIP_COLS);
+        RowBands.forEach(pool, stripPixels, strips, (startStrip, endStrip) -> {
+            double[] sums = new double[STRIP_COLS];
+            double[] entering = new double[STRIP_COLS];
+            double[] result = new double[STRIP_COLS];
+            for (int strip = startStrip; strip < endStrip; strip++) {
+                int c0 = strip * STRIP_COLS;
+                int sw = Math.min(STRIP_COLS, width - c0);
+                Arrays.fill(sums, 0);
+                for (int k = -vRadius; k <= vRadius; k++) {
+                    addRow(rowSums, edges.resolve(k, height), width, c0, sw, entering, sums, 1);
+                }
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < sw; x++) {
+                        result[x] = sums[x] * vNorm;
+                    }
+                    out.writeRow((long) y * width + c0, sw, result);
+                    if (y + 1 < height) {
+                        addRow(rowSums, edges.resolve(y + vRadius + 1, height), width, c0, sw, entering, sums, 1);
+                        addRow(rowSums, edges.resolve(y - vRadius, height), width, c0, sw, entering, sums, -1);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds sign times part of a row of rowSums into sums, rows resolved to -1 are zero and add nothing
+     */
+    private static void addRow(PixelStore rowSums, int row, int width, int c0, int count,
+                               double[] scratch, double[] sums, int sign) {
+        if (row < 0) {
+            return;
+        }
+        rowSums.readRow((long) row * width + c0, 1, count, scratch);
+        for (int x = 0; x < count; x++) {
+            sums[x] += sign * scratch[x];
+        }
+    }
+}
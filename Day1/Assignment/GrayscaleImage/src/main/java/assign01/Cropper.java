@@ -3,6 +3,7 @@ package assign01;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Scanner;
 
 /**
@@ -10,11 +11,22 @@ import java.util.Scanner;
  * It will download an image from the internet, edit it, and save
  * a png file as 'outputImage.png'.  Be sure to include the 'https://' part
  * when entering the image URL
+ * Run with --batch to process a whole directory of local files instead, see BatchCropper
+ * Run with --serve to serve the same edit of local files over HTTP, see ImageServer
  * Author: Ben Jones
  */
 
 public class Cropper {
     public static void main(String[] args)  {
+        if(args.length > 0 && args[0].equals("--batch")){
+            BatchCropper.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if(args.length > 0 && args[0].equals("--serve")){
+            ImageServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         String url;
         if(args.length > 1){
             url = args[1];
@@ -27,7 +39,7 @@ public class Cropper {
 
         try {
             var gi = new GrayscaleImage(new URL(url));
-            gi.squarified().normalized().mirrored().savePNG(new File("outputImage.png"));
+            gi.pipeline().squarified().normalized().mirrored().savePNG(new File("outputImage.png"));
         } catch(IOException ex){
             System.out.println("Failed to download or save file: " + ex.getMessage());
         }
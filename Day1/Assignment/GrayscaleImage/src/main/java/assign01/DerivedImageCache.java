@@ -0,0 +1,83 @@
+package assign01;
+
+import java.util.List;
+
+/**
+ * A bounded, thread-safe cache of ImagePipeline results
+ * An entry is keyed by the content hash, pixel format and size of the pipeline's source image plus its
+ * recorded operations and their parameters, so the same chain applied to an equal image (even one
+ * decoded again from the same file) is a hit and costs no pixel work apart from hashing a new source once
+ * Entries are weighed by the bytes their pixels take, and the least recently used ones are evicted
+ * once the total goes over the budget. A result bigger than the whole budget is returned but never kept
+ * Cached images are immutable, so the same instance is handed to every caller
+ * A result computed in a caller's Arena (from an offHeap source) is returned to that caller, and the cache
+ * keeps a heap copy of it instead, so later hits don't depend on the arena staying open or on its thread
+ * Two threads missing on the same key at the same time both compute it, the second result is dropped
+ */
+public class DerivedImageCache {
+    private record Key(long sourceHash, PixelFormat sourceFormat, int sourceWidth, int sourceHeight, List<?> ops) {}
+
+    /**
+     * A snapshot of the cache counters
+     * @param hits lookups answered from the cache
+     * @param misses lookups that had to run the pipeline
+     * @param evictions entries dropped to stay within the budget
+     * @param entries images currently held
+     * @param bytes pixel bytes currently held
+     */
+    public record Stats(long hits, long misses, long evictions, int entries, long bytes) {
+        /**
+         * @return hits / (hits + misses), or 0 before the first lookup
+         */
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    private final ImageLru<Key> entries;
+
+    /**
+     * @param maxBytes the most pixel bytes to keep
+     * @throws IllegalArgumentException if maxBytes is negative
+     */
+    public DerivedImageCache(long maxBytes) {
+        entries = new ImageLru<>(maxBytes);
+    }
+
+    /**
+     * Returns the cached result of pipeline, running it on a miss
+     * @return an image equal to pipeline.materialize()
+     */
+    public GrayscaleImage materialize(ImagePipeline pipeline) {
+        GrayscaleImage source = pipeline.source();
+        var key = new Key(source.contentHash(), source.format(), source.width(), source.height(), pipeline.ops());
+
+        GrayscaleImage cached = entries.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        // run the pipeline outside the cache lock so that other lookups are not held up
+        GrayscaleImage result = pipeline.materialize();
+        if (result.arenaScoped()) {
+            entries.putIfAbsent(key, result.detached());
+            return result;
+        }
+        return entries.putIfAbsent(key, result);
+    }
+
+    /**
+     * Drops every entry, the counters are kept
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    public Stats stats() {
+        return entries.stats();
+    }
+
+    public long maxBytes() {
+        return entries.maxBytes();
+    }
+}
@@ -0,0 +1,57 @@
+package assign01;
+
+/**
+ * Stores each pixel as a double, matching the precision of the double[][] the image can be built from
+ */
+final class DoublePixelStore extends PixelStore {
+    private final double[] data;
+
+    DoublePixelStore(int size) {
+        data = new double[size];
+    }
+
+    @Override
+    PixelFormat format() {
+        return PixelFormat.DOUBLE;
+    }
+
+    @Override
+    long size() {
+        return data.length;
+    }
+
+    @Override
+    double get(long index) {
+        return data[(int) index];
+    }
+
+    @Override
+    void set(long index, double value) {
+        data[(int) index] = value;
+    }
+
+    @Override
+    void readRow(long start, long step, int count, double[] dst) {
+        if (step == 1) {
+            System.arraycopy(data, (int) start, dst, 0, count);
+        } else {
+            int base = (int) start;
+            for (int i = 0; i < count; i++) {
+                dst[i] = data[(int) (base + i * step)];
+            }
+        }
+    }
+
+    @Override
+    void readRowBytes(long start, long step, int count, byte[] dst, int dstOffset) {
+        int base = (int) start;
+        for (int i = 0; i < count; i++) {
+            dst[dstOffset + i] = (byte) (int) data[(int) (base + i * step)];
+        }
+    }
+
+    @Override
+    void writeRow(long start, int count, double[] src) {
+        System.arraycopy(src, 0, data, (int) start, count);
+    }
+}
@@ -0,0 +1,35 @@
+package assign01;
+
+/**
+ * How filters such as convolution read pixels outside the image
+ * For an image row "abcd":
+ * ZERO treats them as 0 (000|abcd|000), CLAMP repeats the edge pixel (aaa|abcd|ddd),
+ * REFLECT mirrors the image including the edge pixel (cba|abcd|dcb) and WRAP tiles it (bcd|abcd|abc)
+ */
+public enum EdgeMode {
+    ZERO,
+    CLAMP,
+    REFLECT,
+    WRAP;
+
+    /**
+     * Maps a possibly out of range index to the index that should be read instead
+     * @param index position along a row or column, may be negative or past the end
+     * @param size length of the row or column
+     * @return an index in 0 .. size - 1, or -1 if the pixel should be read as 0
+     */
+    int resolve(int index, int size) {
+        if (index >= 0 && index < size) {
+            return index;
+        }
+        return switch (this) {
+            case ZERO -> -1;
+            case CLAMP -> index < 0 ? 0 : size - 1;
+            case REFLECT -> {
+                int period = Math.floorMod(index, 2 * size);
+                yield period < size ? period : 2 * size - 1 - period;
+            }
+            case WRAP -> Math.floorMod(index, size);
+        };
+    }
+}
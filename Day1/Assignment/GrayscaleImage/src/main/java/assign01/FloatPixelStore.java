@@ -0,0 +1,62 @@
+package assign01;
+
+/**
+ * Stores each pixel as a float, half the size of a double
+ */
+final class FloatPixelStore extends PixelStore {
+    private final float[] data;
+
+    FloatPixelStore(int size) {
+        data = new float[size];
+    }
+
+    @Override
+    PixelFormat format() {
+        return PixelFormat.FLOAT;
+    }
+
+    @Override
+    long size() {
+        return data.length;
+    }
+
+    @Override
+    double get(long index) {
+        return data[(int) index];
+    }
+
+    @Override
+    void set(long index, double value) {
+        data[(int) index] = (float) value;
+    }
+
+    @Override
+    void readRow(long start, long step, int count, double[] dst) {
+        int base = (int) start;
+        if (step == 1) {
+            for (int i = 0; i < count; i++) {
+                dst[i] = data[base + i];
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                dst[i] = data[(int) (base + i * step)];
+            }
+        }
+    }
+
+    @Override
+    void readRowBytes(long start, long step, int count, byte[] dst, int dstOffset) {
+        int base = (int) start;
+        for (int i = 0; i < count; i++) {
+            dst[dstOffset + i] = (byte) (int) data[(int) (base + i * step)];
+        }
+    }
+
+    @Override
+    void writeRow(long start, int count, double[] src) {
+        int base = (int) start;
+        for (int i = 0; i < count; i++) {
+            data[base + i] = (float) src[i];
+        }
+    }
+}
@@ -1,22 +1,70 @@
 package assign01;
 
 
+import assign01.ImageMetrics.Operation;
+
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.foreign.Arena;
 import java.net.URL;
-import java.util.stream.DoubleStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
 
 
 /**
- * Represents a grayscale (black and white) image as a 2D array of "pixel" brightnesses
+ * Represents a grayscale (black and white) image as a 2D grid of "pixel" brightnesses
  * 255 is "white" 127 is "gray" 0 is "black" with intermediate values in between
+ * Pixels are kept in one contiguous row-major buffer whose primitive type is chosen by a PixelFormat
+ * cropped(), squarified(), mirrored() and the flips and rotations return views that share their parent's buffer through an
+ * offset and a row/column stride instead of copying pixels. No operation ever writes into an existing
+ * buffer, so a view can never observe or cause a change in the image it came from
+ * Images too big for the heap can be memory-mapped from a raw file with mapRaw() or a PGM file
+ * with mapPGM(). Every operation streams over them a row band at a time, so heap use is bounded by the image width, and results
+ * that need new pixels are written to mapped temporary files rather than the heap
+ * offHeap() moves an image into memory from an Arena, and everything computed from it stays there
+ * By default every operation runs on the calling thread. parallel() opts an image (and every image
+ * derived from it) into splitting large pixel loops into row bands on a ForkJoinPool
  * Author: Ben Jones and Ajith Alphonse
  */
 public class GrayscaleImage {
-    private double[][] imageData; // the actual image data
+    private final PixelStore pixels; // the actual image data, possibly shared with other images
+    private final long offset;       // buffer index of pixel (row 0, col 0)
+    private final long rowStride;    // buffer distance between (row, col) and (row + 1, col)
+    private final long colStride;    // buffer distance between (row, col) and (row, col + 1), negative when mirrored
+    private final int width;
+    private final int height;
+    private final ForkJoinPool pool;  // where to run row bands, null for the calling thread
+
+    // caches, computed on first use. Pixels never change, so a racing thread can only compute the same value again
+    private volatile Double sum;                  // sum of every pixel
+    private volatile IntegralImage integralImage; // summed-area table for region queries
+    private volatile Histogram histogram;
+    private volatile GrayscaleImage[] pyramid;     // successive halvings, level 0 is this image
+    private volatile Long contentHash;             // 64-bit hash of the size and pixel values
+
+    private static final int PGM_CHUNK_BYTES = 1 << 20; // how much savePGM buffers between writes
 
 
     /**
@@ -26,57 +74,411 @@ public class GrayscaleImage {
      * @throws IllegalArgumentException if the input array is empty or "jagged" meaning not all rows are the same length
      */
     public GrayscaleImage(double[][] data){
+        this(data, PixelFormat.DOUBLE);
+    }
+
+    /**
+     * Initialize an image from a 2D array of doubles, stored in the given format
+     * This constructor creates a copy of the input array
+     * @param data initial pixel values
+     * @param format primitive type used to store each pixel
+     * @throws IllegalArgumentException if the input array is empty or "jagged" meaning not all rows are the same length
+     */
+    public GrayscaleImage(double[][] data, PixelFormat format){
         if(data.length == 0 || data[0].length == 0){
             throw new IllegalArgumentException("Image is empty");
         }
 
-        imageData = new double[data.length][data[0].length];
-        for(var row = 0; row < imageData.length; row++){
-            if(data[row].length != imageData[row].length){
+        height = data.length;
+        width = data[0].length;
+        offset = 0;
+        rowStride = width;
+        colStride = 1;
+        pool = null;
+        pixels = PixelStore.allocate(format, (long) width * height);
+        for(var row = 0; row < height; row++){
+            if(data[row].length != width){
                 throw new IllegalArgumentException("All rows must have the same length");
             }
-            for(var col = 0; col < imageData[row].length; col++){
-                imageData[row][col] = data[row][col];
-            }
+            pixels.writeRow((long) row * width, width, data[row]);
         }
     }
 
+    /**
+     * Wraps an already filled pixel buffer without validating or copying it
+     * The new image takes ownership of pixels, so the caller must not write to it afterwards
+     * Only used by the transforms in this class and by GrayscaleImageBuffer, which build buffers of exactly width * height pixels
+     * @param pixels row-major pixel data, width * height long
+     * @param width
+     * @param height
+     * @param pool execution mode inherited from the image this one was computed from
+     */
+    GrayscaleImage(PixelStore pixels, int width, int height, ForkJoinPool pool){
+        this(pixels, 0, width, 1, width, height, pool);
+    }
+
+    /**
+     * Creates a view of part of a buffer, pixel (row, col) is pixels[offset + row * rowStride + col * colStride]
+     * The buffer is shared, not copied. Strides are not validated, callers derive them from an existing image
+     */
+    private GrayscaleImage(PixelStore pixels, long offset, long rowStride, long colStride,
+                           int width, int height, ForkJoinPool pool){
+        this.pixels = pixels;
+        this.offset = offset;
+        this.rowStride = rowStride;
+        this.colStride = colStride;
+        this.width = width;
+        this.height = height;
+        this.pool = pool;
+    }
+
     /**
      * Fetches an image from the specified URL and converts it to grayscale
      * Uses the AWT Graphics2D class to do the conversion, so it may add
      * an item to your dock/menu bar as if you're loading a GUI program
+     * The decoded image is 8 bits per pixel, so it is stored in PixelFormat.BYTE
      * @param url where to download the image
      * @throws IOException if the image can't be downloaded for some reason
      */
     public GrayscaleImage(URL url) throws IOException {
-        var inputImage = ImageIO.read(url);
+        this(decode(() -> ImageIO.read(url), url));
+    }
+
+    /**
+     * Reads an image file and converts it to grayscale, like GrayscaleImage(URL)
+     * @param file the image to read
+     * @throws IOException if the file can't be read or isn't an image format ImageIO understands
+     */
+    public GrayscaleImage(File file) throws IOException {
+        this(decode(() -> ImageIO.read(file), file));
+    }
+
+    /**
+     * Reads an image file and converts it to grayscale, like GrayscaleImage(URL)
+     * @param path the image to read
+     * @throws IOException if the file can't be read or isn't an image format ImageIO understands
+     */
+    public GrayscaleImage(Path path) throws IOException {
+        this(path.toFile());
+    }
+
+    /**
+     * Decodes an image from a stream and converts it to grayscale, like GrayscaleImage(URL)
+     * The stream is read to the end of the image but not closed
+     * @param input encoded image bytes
+     * @throws IOException if the stream can't be read or isn't an image format ImageIO understands
+     */
+    public GrayscaleImage(InputStream input) throws IOException {
+        this(decode(() -> ImageIO.read(input), "input stream"));
+    }
+
+    /**
+     * Memory-maps a raw image file instead of reading it onto the heap, so images much
+     * larger than the heap can be processed. Pages are loaded by the OS as they are touched
+     * The file holds width * height pixels row after row with no header, in the given format,
+     * with FLOAT and DOUBLE pixels little-endian (the layout written by saveRaw)
+     * The file must not be changed while the image is in use
+     * @param file the raw pixel file
+     * @param width
+     * @param height
+     * @param format the primitive type of each pixel in the file
+     * @return a read-only image backed by the mapped file
+     * @throws IOException if the file can't be opened or is too short
+     * @throws IllegalArgumentException if width or height are not positive
+     */
+    public static GrayscaleImage mapRaw(Path file, int width, int height, PixelFormat format) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Image is empty");
+        }
+        var store = SegmentPixelStore.map(file, format, 0, (long) width * height, false);
+        return new GrayscaleImage(store, width, height, null);
+    }
+
+    /**
+     * Memory-maps a binary PGM (P5) file, like mapRaw but with the size read from the file's header
+     * The pixels are used where they lie in the file, so loading takes constant time whatever the image size
+     * The file must not be changed while the image is in use
+     * @param file an 8-bit PGM file with maximum value 255, such as one written by savePGM
+     * @return a read-only BYTE image backed by the mapped file
+     * @throws IOException if the file can't be opened, isn't an 8-bit binary PGM, has a maximum value other
+     *                     than 255 (its pixels would need scaling, use readPGM) or is too short
+     */
+    public static GrayscaleImage mapPGM(Path file) throws IOException {
+        Pgm.Header header;
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var start = ByteBuffer.allocate((int) Math.min(channel.size(), Pgm.MAX_HEADER_BYTES));
+            while (start.hasRemaining() && channel.read(start) >= 0) {
+                // keep reading, a channel may return fewer bytes than asked for
+            }
+            header = Pgm.parse(start.flip());
+        }
+        if (header.maxValue() != Pgm.FULL_SCALE) {
+            throw new IOException("Can't map a PGM file with maximum value " + header.maxValue()
+                    + ", its pixels need scaling to 0-255, use readPGM");
+        }
+        var store = SegmentPixelStore.map(file, PixelFormat.BYTE, header.length(),
+                (long) header.width() * header.height(), false);
+        return new GrayscaleImage(store, header.width(), header.height(), null);
+    }
+
+    /**
+     * Reads a binary PGM (P5) image from a channel onto the heap, straight into the pixel buffer
+     * Only the header and the pixels are consumed, so several images can be read from one channel
+     * Files with a maximum value below 255 are scaled up, so their brightest value becomes 255
+     * @param channel positioned at the start of the PGM header, not closed
+     * @return a BYTE image
+     * @throws IOException if the channel can't be read, ends early or doesn't hold an 8-bit binary PGM
+     */
+    public static GrayscaleImage readPGM(ReadableByteChannel channel) throws IOException {
+        var timer = ImageMetrics.start(Operation.DECODE);
+        Pgm.Header header = Pgm.parse(channel);
+        long size = (long) header.width() * header.height();
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("PGM image is too large for the heap, use mapPGM");
+        }
+        byte[] data = new byte[(int) size];
+        var buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("PGM pixels end after " + buffer.position() + " of " + size + " bytes");
+            }
+        }
+        Pgm.scaleToFullRange(data, header.maxValue());
+        return ImageMetrics.stop(timer, new GrayscaleImage(new BytePixelStore(data), header.width(), header.height(), null));
+    }
+
+    /**
+     * Adopts the raster of a packed TYPE_BYTE_GRAY image as the pixel buffer, without copying it
+     * @param grayImage an image that passed isPackedGray and that nothing else will draw into
+     */
+    private GrayscaleImage(BufferedImage grayImage){
+        this(new BytePixelStore(((DataBufferByte) grayImage.getRaster().getDataBuffer()).getData()),
+                grayImage.getWidth(), grayImage.getHeight(), null);
+    }
+
+    /** ImageIO.read, or a call to it with a different source */
+    private interface Decoder {
+        BufferedImage read() throws IOException;
+    }
+
+    /**
+     * Reads an image and converts it to packed gray, timed as one DECODE
+     */
+    private static BufferedImage decode(Decoder decoder, Object source) throws IOException {
+        var timer = ImageMetrics.start(Operation.DECODE);
+        BufferedImage grayImage = toPackedGray(checkDecoded(decoder.read(), source));
+        long size = (long) grayImage.getWidth() * grayImage.getHeight();
+        ImageMetrics.stop(timer, size, size);
+        return grayImage;
+    }
+
+    /**
+     * ImageIO.read returns null rather than throwing when no reader understands the data
+     */
+    private static BufferedImage checkDecoded(BufferedImage image, Object source) throws IOException {
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + source);
+        }
+        return image;
+    }
+
+    /**
+     * Converts an image to an 8-bit gray image whose raster is exactly width * height bytes, row after row
+     * Images that are already in that layout (e.g. grayscale PNGs) are returned as they are
+     */
+    private static BufferedImage toPackedGray(BufferedImage inputImage){
+        if (isPackedGray(inputImage)) {
+            return inputImage;
+        }
         //convert input image to grayscale
         //based on (https://stackoverflow.com/questions/6881578/how-to-convert-between-color-models)
         var grayImage = new BufferedImage(inputImage.getWidth(), inputImage.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
         Graphics2D g2d= grayImage.createGraphics();
         g2d.drawImage(inputImage, 0, 0, null);
         g2d.dispose();
-        imageData = new double[grayImage.getHeight()][grayImage.getWidth()];
-
-        //raster is basically a width x height x 1 3-dimensional array
-        var grayRaster = grayImage.getRaster();
-        for(var row = 0; row < imageData.length; row++){
-            for(var col = 0; col < imageData[0].length; col++){
-                //getSample parameters are x (our column) and y (our row), so they're "backwards"
-                imageData[row][col] = grayRaster.getSampleDouble(col, row, 0);
-            }
+        return grayImage;
+    }
+
+    private static boolean isPackedGray(BufferedImage image){
+        if (image.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            return false;
         }
+        var raster = image.getRaster();
+        return raster.getParent() == null
+                && raster.getSampleModel() instanceof ComponentSampleModel sampleModel
+                && sampleModel.getPixelStride() == 1
+                && sampleModel.getScanlineStride() == image.getWidth()
+                && raster.getDataBuffer() instanceof DataBufferByte buffer
+                && buffer.getNumBanks() == 1
+                && buffer.getOffset() == 0
+                && buffer.getSize() == image.getWidth() * image.getHeight();
     }
 
     public void savePNG(File filename) throws IOException {
-        var outputImage = new BufferedImage(imageData[0].length, imageData.length, BufferedImage.TYPE_BYTE_GRAY);
-        var raster = outputImage.getRaster();
-        for(var row = 0; row < imageData.length; row++){
-            for(var col = 0; col < imageData[0].length; col++){
-                raster.setSample(col, row, 0, imageData[row][col]);
+        var timer = ImageMetrics.start(Operation.ENCODE_PNG);
+        ImageIO.write(toBufferedImage(), "png", filename);
+        ImageMetrics.stop(timer, (long) width * height, (long) width * height);
+    }
+
+    /**
+     * Encodes the image as a PNG with a chosen zlib deflate level, like savePNG(File)
+     * Lower levels encode much faster and give bigger files
+     * @param output where to write the png, not closed
+     * @param deflateLevel 0 (no compression, fastest) to 9 (smallest)
+     * @throws IOException if the stream can't be written
+     * @throws IllegalArgumentException if deflateLevel is outside 0-9
+     */
+    public void savePNG(OutputStream output, int deflateLevel) throws IOException {
+        if (deflateLevel < Deflater.NO_COMPRESSION || deflateLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Deflate level must be between 0 and 9");
+        }
+        var timer = ImageMetrics.start(Operation.ENCODE_PNG);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        try (ImageOutputStream imageOutput = new MemoryCacheImageOutputStream(output)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            // the JDK png writer uses deflate level 9 - round(9 * quality)
+            param.setCompressionQuality((Deflater.BEST_COMPRESSION - deflateLevel) / 9f);
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(toBufferedImage(), null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        // the 8-bit copy toBufferedImage makes is the allocation
+        ImageMetrics.stop(timer, (long) width * height, (long) width * height);
+    }
+
+    /**
+     * Encodes the image as a PNG with a chosen deflate level, like savePNG(OutputStream, int)
+     * @param channel where to write the png, not closed
+     */
+    public void savePNG(WritableByteChannel channel, int deflateLevel) throws IOException {
+        // closing this stream would close the channel, flushing is enough
+        var output = Channels.newOutputStream(channel);
+        savePNG(output, deflateLevel);
+        output.flush();
+    }
+
+    /**
+     * Writes the image as a binary PGM (P5) file that mapPGM and readPGM can load
+     * Pixels are converted to 8 bits like savePNG, but nothing is compressed: rows are copied
+     * into a buffer and written in large chunks, so saving a BYTE image costs little more than the write itself
+     * @param file where to write, replaced if it exists
+     * @throws IOException if the file can't be written
+     */
+    public void savePGM(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            savePGM(channel);
+        }
+    }
+
+    /**
+     * Writes the image as a binary PGM (P5) stream, like savePGM(Path)
+     * @param channel where to write, not closed
+     * @throws IOException if the channel can't be written
+     */
+    public void savePGM(WritableByteChannel channel) throws IOException {
+        if (Math.abs(colStride) != 1) {
+            rowMajor().savePGM(channel);
+            return;
+        }
+        var timer = ImageMetrics.start(Operation.ENCODE_PGM);
+        int rowsPerChunk = Math.max(1, Math.min(height, PGM_CHUNK_BYTES / width));
+        var buffer = ByteBuffer.allocate(rowsPerChunk * width);
+        writeFully(channel, ByteBuffer.wrap(Pgm.header(width, height)));
+        for (int startRow = 0; startRow < height; startRow += rowsPerChunk) {
+            int rows = Math.min(rowsPerChunk, height - startRow);
+            for (int i = 0; i < rows; i++) {
+                pixels.readRowBytes(index(startRow + i, 0), colStride, width, buffer.array(), i * width);
+            }
+            buffer.clear().limit(rows * width);
+            writeFully(channel, buffer);
+        }
+        ImageMetrics.stop(timer, (long) width * height, buffer.capacity());
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Writes the pixels as a headerless raw file that mapRaw can open, in this image's format
+     * The file is written a row at a time, so it works for images larger than the heap
+     * @param file where to write, replaced if it exists
+     * @throws IOException if the file can't be written
+     */
+    public void saveRaw(Path file) throws IOException {
+        if (Math.abs(colStride) != 1) {
+            rowMajor().saveRaw(file);
+            return;
+        }
+        PixelFormat format = pixels.format();
+        var buffer = ByteBuffer.allocate(width * format.bytesPerPixel()).order(ByteOrder.LITTLE_ENDIAN);
+        double[] row = new double[width];
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < height; i++) {
+                buffer.clear();
+                if (format == PixelFormat.BYTE) {
+                    // byte stores hold 0-255, so this is an exact copy
+                    pixels.readRowBytes(index(i, 0), colStride, width, buffer.array(), 0);
+                    buffer.position(width);
+                } else {
+                    readRow(i, 0, width, row);
+                    for (int j = 0; j < width; j++) {
+                        if (format == PixelFormat.FLOAT) {
+                            buffer.putFloat((float) row[j]);
+                        } else {
+                            buffer.putDouble(row[j]);
+                        }
+                    }
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
             }
         }
-        ImageIO.write(outputImage, "png", filename);
+    }
+
+    /**
+     * Copies this image into an 8-bit gray BufferedImage, a row at a time straight into its byte buffer
+     * Values are converted like WritableRaster.setSample: truncated to an int, keeping the low 8 bits
+     * @return a new TYPE_BYTE_GRAY image
+     */
+    BufferedImage toBufferedImage(){
+        if (Math.abs(colStride) != 1) {
+            return rowMajor().toBufferedImage();
+        }
+        var outputImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        // a freshly created TYPE_BYTE_GRAY raster is packed, one byte per pixel with no row padding
+        byte[] out = ((DataBufferByte) outputImage.getRaster().getDataBuffer()).getData();
+        RowBands.forEach(pool, width, height, (startRow, endRow) -> {
+            for (int row = startRow; row < endRow; row++) {
+                pixels.readRowBytes(index(row, 0), colStride, width, out, row * width);
+            }
+        });
+        return outputImage;
+    }
+
+    /**
+     * @param row
+     * @param col
+     * @return the position of pixel (row, col) in the flat pixel buffer
+     */
+    private long index(int row, int col){
+        return offset + row * rowStride + col * colStride;
+    }
+
+    /**
+     * Copies count pixels of one row, starting at startCol, into dst[0 .. count)
+     * Bounds are checked by the caller
+     */
+    void readRow(int row, int startCol, int count, double[] dst){
+        pixels.readRow(index(row, startCol), colStride, count, dst);
     }
 
     ///Methods to be filled in by students below
@@ -91,55 +493,227 @@ public class GrayscaleImage {
      */
     public double getPixel(int x, int y) throws IllegalArgumentException{
         // TODO: determine if negative indexes should be supported. Doc string and testGetPixelThrowsOnNegativeX test are contradictory.
-        if (x < 0 || x >= imageData[0].length || y < 0 || y >= imageData.length) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
             throw new IllegalArgumentException("Pixels are out of bounds");
         }
 
-        return  imageData[y][x];
+        return pixels.get(index(y, x));
     }
 
     /**
 
      * Two images are equal if they have the same size and each corresponding pixel
      * in the two images is exactly equal
+     * The pixel formats do not need to match, only the brightness values
+     * Images whose content hashes are both already computed and differ are rejected without
+     * reading any pixels, so hashing images up front (e.g. by putting them in a HashSet) makes
+     * most comparisons between different images constant time
      * @param other
      * @return true if the objects are equivalent, otherwise false.
      */
     @Override
     public boolean equals(Object other){
+        if (this == other) {
+            return true;
+        }
         if(!(other instanceof GrayscaleImage)){
             return false;
         }
 
         GrayscaleImage otherImage = (GrayscaleImage)other;
 
-        if (imageData.length != otherImage.imageData.length || imageData[0].length
-                != otherImage.imageData[0].length) {
+        if (height != otherImage.height || width != otherImage.width) {
+            return false;
+        }
+        Long hash = contentHash;
+        Long otherHash = otherImage.contentHash;
+        if (hash != null && otherHash != null && hash.longValue() != otherHash.longValue()) {
             return false;
         }
 
-        // Check that each pixel value is equivalent
-        for (int i = 0; i < imageData.length; i++) {
-            for (int j = 0; j < imageData[0].length; j++) {
-                if (imageData[i][j] != otherImage.imageData[i][j]) {
-                    return false;
+        // Check that each pixel value is equivalent, a row at a time
+        // bands stop early once any band has found a difference
+        var different = new AtomicBoolean();
+        GrayscaleImage image = rowMajor();
+        GrayscaleImage otherRows = otherImage.rowMajor();
+        RowBands.forEach(pool, width, height, (startRow, endRow) -> {
+            double[] row = new double[width];
+            double[] otherRow = new double[width];
+            for (int i = startRow; i < endRow && !different.get(); i++) {
+                image.readRow(i, 0, width, row);
+                otherRows.readRow(i, 0, width, otherRow);
+                if (PixelKernels.mismatch(row, otherRow, width) >= 0) {
+                    different.set(true);
+                    return;
                 }
             }
+        });
+        return !different.get();
+    }
+
+    /**
+     * Measures how this image differs from other, like diff(other, 0, false, false)
+     * @throws IllegalArgumentException if the images are different sizes
+     */
+    public ImageDiff diff(GrayscaleImage other){
+        return diff(other, 0, false, false);
+    }
+
+    /**
+     * Measures how this image differs from other: maximum and mean absolute error, PSNR, the number of
+     * changed pixels and the rectangle around them, all in one pass over both images
+     * @param other the image to compare against, the same size as this one
+     * @param tolerance pixels whose absolute difference is at most this are not counted as changed
+     * @param stopAtFirstChange stop reading rows once a changed pixel is found, for a quick yes/no answer
+     *                          the statistics then only cover the rows read so far
+     * @param keepDiffImage also build an image of the absolute differences, in BYTE if both images are BYTE,
+     *                      otherwise in the wider of their formats
+     * @return the differences
+     * @throws IllegalArgumentException if the images are different sizes, or a diff image is asked for
+     *                                  from a diff that may stop early
+     */
+    public ImageDiff diff(GrayscaleImage other, double tolerance, boolean stopAtFirstChange, boolean keepDiffImage){
+        if (width != other.width || height != other.height) {
+            throw new IllegalArgumentException("Images are different sizes: " + width + "x" + height
+                    + " and " + other.width + "x" + other.height);
+        }
+        if (stopAtFirstChange && keepDiffImage) {
+            throw new IllegalArgumentException("A diff that stops early can't build a diff image");
+        }
+        PixelStore out = null;
+        if (keepDiffImage) {
+            PixelFormat a = pixels.format();
+            PixelFormat b = other.pixels.format();
+            PixelFormat format = a == PixelFormat.BYTE && b == PixelFormat.BYTE ? PixelFormat.BYTE
+                    : a == PixelFormat.DOUBLE || b == PixelFormat.DOUBLE ? PixelFormat.DOUBLE : PixelFormat.FLOAT;
+            out = pixels.allocateLike(format, (long) width * height);
+        }
+        var timer = ImageMetrics.start(Operation.DIFF);
+        var diff = new ImageDiff(this, other, tolerance, stopAtFirstChange, out, pool);
+        ImageMetrics.stop(timer, diff.comparedPixels(), out == null ? 0 : out.size() * out.format().bytesPerPixel());
+        return diff;
+    }
+
+    /**
+     * @return true if other is the same size and no pixel differs by more than tolerance,
+     *         reading only as far as the first pixel that does
+     */
+    public boolean matches(GrayscaleImage other, double tolerance){
+        if (width != other.width || height != other.height) {
+            return false;
+        }
+        return !diff(other, tolerance, true, false).hasChanges();
+    }
+
+    /**
+     * @return the low and high halves of contentHash() folded together, consistent with equals
+     */
+    @Override
+    public int hashCode(){
+        long hash = contentHash();
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * A 64-bit hash of the image size and pixel values, suitable for deduplicating large sets of images
+     * Equal images always have the same hash, whatever their pixel format or whether they are views:
+     * only the brightness values count, and 0.0 and -0.0 hash the same
+     * The hash is computed once, one row band at a time in parallel mode, and cached. Row hashes are
+     * combined in row order, so the result does not depend on the pool or on the run
+     * @return the content hash
+     */
+    public long contentHash(){
+        Long hash = contentHash;
+        if (hash == null) {
+            var timer = ImageMetrics.start(Operation.HASH);
+            long[] rowHashes = new long[height];
+            GrayscaleImage image = rowMajor();
+            RowBands.forEach(pool, width, height, (startRow, endRow) -> {
+                double[] row = new double[width];
+                for (int i = startRow; i < endRow; i++) {
+                    image.readRow(i, 0, width, row);
+                    rowHashes[i] = PixelKernels.hash(row, width);
+                }
+            });
+            hash = PixelKernels.combineHashes(width, rowHashes);
+            contentHash = hash;
+            ImageMetrics.stop(timer, (long) width * height, 0);
         }
-        return true;
+        return hash;
     }
 
 
     /**
      * Computes the average of all values in image data
+     * The sum is computed once and cached, later calls take constant time
      * @return the average of the imageData array
      */
     public double averageBrightness(){
-        double sum = 0;
-        for (int i = 0; i < imageData.length; i++) {
-            sum += DoubleStream.of(imageData[i]).sum();
+        Double total = sum;
+        if (total == null) {
+            total = scanSum(0, 0, width, height);
+            sum = total;
+        }
+        return total / ((double) height * width);
+    }
+
+    /**
+     * Computes the average brightness of a rectangle, like cropped(...).averageBrightness()
+     * The first region query builds a summed-area table of the image in one pass,
+     * after that every query takes constant time (see regionSum for images that don't get a table)
+     * @param startRow
+     * @param startCol
+     * @param width
+     * @param height
+     * @return the average of the pixels in the rectangle
+     * @throws IllegalArgumentException if the rectangle goes outside the bounds of the image
+     */
+    public double averageBrightness(int startRow, int startCol, int width, int height){
+        return regionSum(startRow, startCol, width, height) / ((double) width * height);
+    }
+
+    /**
+     * Computes the sum of the pixels in a rectangle, using the same summed-area table as
+     * averageBrightness(startRow, startCol, width, height)
+     * The table is 8 bytes per pixel on the heap, so images outside the heap (mapped or arena images)
+     * and images too large for the table instead add up the rectangle directly, in parallel bands
+     * @param startRow
+     * @param startCol
+     * @param width
+     * @param height
+     * @return the sum of the pixels in the rectangle
+     * @throws IllegalArgumentException if the rectangle goes outside the bounds of the image
+     */
+    public double regionSum(int startRow, int startCol, int width, int height){
+        checkRegion(startRow, startCol, width, height);
+        if (!usesRegionTable()) {
+            return scanSum(startRow, startCol, width, height);
+        }
+        IntegralImage table = integralImage;
+        if (table == null) {
+            table = new IntegralImage(this, pool);
+            integralImage = table;
+        }
+        return table.sum(startRow, startCol, width, height);
+    }
+
+    /**
+     * @return true if region queries build and use a summed-area table
+     */
+    boolean usesRegionTable(){
+        return pixels.onHeap() && IntegralImage.fits(width, height);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rectangle is empty or goes outside the bounds of the image
+     */
+    private void checkRegion(int startRow, int startCol, int width, int height){
+        // ensure the target end indexes exist in the source image
+        // (compared by subtracting, startRow + height could overflow)
+        if (startRow < 0 || startCol < 0 || width <= 0 || height <= 0
+                || height > this.height - startRow || width > this.width - startCol) {
+            throw new IllegalArgumentException("Cropped row and column out of bounds");
         }
-        return sum / (imageData.length * imageData[0].length);
     }
 
     /**
@@ -147,50 +721,359 @@ public class GrayscaleImage {
      * To do this, uniformly scale each pixel (ie, multiply each imageData entry by the same value)
      * Due to rounding, the new average brightness will not be 127 exactly, but should be very close
      * The original image should not be modified
+     * A BYTE image produces a FLOAT result so the scaled values are not rounded
      * @return a GrayScale image with pixel data uniformly rescaled so that its averageBrightness() is 127
      */
     public GrayscaleImage normalized(){
+        var timer = ImageMetrics.start(Operation.NORMALIZE);
+        PixelFormat resultFormat = pixels.format() == PixelFormat.BYTE ? PixelFormat.FLOAT : pixels.format();
         double avgBrightness = averageBrightness();
         // If the average is zero then return a copy of this image as the "scaled" from will still be 0
         if (avgBrightness == 0){
-            return new GrayscaleImage(imageData);
+            return ImageMetrics.stop(timer, copyAs(resultFormat));
+        }
+
+        return ImageMetrics.stop(timer, rescaled(127 / avgBrightness, resultFormat));
+    }
+
+
+    /**
+     * Counts the pixels in each brightness bin, for percentile and min/max queries
+     * Built in one pass on first use and cached
+     * @return the histogram of this image
+     */
+    public Histogram histogram(){
+        Histogram result = histogram;
+        if (result == null) {
+            var timer = ImageMetrics.start(Operation.HISTOGRAM);
+            result = new Histogram(rowMajor(), pool);
+            histogram = result;
+            ImageMetrics.stop(timer, (long) width * height, 0);
+        }
+        return result;
+    }
+
+    /**
+     * Return a new image with its histogram equalized, spreading the brightnesses out over 0-255
+     * so that each output brightness is roughly equally common
+     * Pixels in the same histogram bin get the same output value, computed once per bin in a lookup table
+     * If every pixel is in the same bin the result is an unchanged copy
+     * The original image should not be modified
+     * @return a new GrayscaleImage in the same pixel format
+     */
+    public GrayscaleImage equalized(){
+        var timer = ImageMetrics.start(Operation.TONE_MAP);
+        double[] table = histogram().equalizationTable();
+        if (table == null) {
+            return ImageMetrics.stop(timer, copyAs(pixels.format()));
+        }
+        return ImageMetrics.stop(timer, lookedUp(table));
+    }
+
+    /**
+     * Return a new image with brightness lo mapped to 0 and hi mapped to 255, linearly in between,
+     * with values outside lo-hi clamped. Combine with histogram().percentile() for percentile clipping,
+     * e.g. contrastStretched(h.percentile(1), h.percentile(99))
+     * BYTE images are mapped through a 256 entry lookup table, other formats are mapped exactly
+     * The original image should not be modified
+     * @param lo the brightness that becomes black
+     * @param hi the brightness that becomes white
+     * @return a new GrayscaleImage in the same pixel format
+     * @throws IllegalArgumentException if hi is not greater than lo
+     */
+    public GrayscaleImage contrastStretched(double lo, double hi){
+        if (!(hi > lo)) {
+            throw new IllegalArgumentException("hi must be greater than lo");
+        }
+        var timer = ImageMetrics.start(Operation.TONE_MAP);
+        double scale = 255 / (hi - lo);
+        if (pixels.format() == PixelFormat.BYTE) {
+            double[] table = new double[Histogram.BINS];
+            for (int b = 0; b < table.length; b++) {
+                table[b] = Math.min(255, Math.max(0, (b - lo) * scale));
+            }
+            return ImageMetrics.stop(timer, lookedUp(table));
         }
 
-        double scale = 127 / averageBrightness();
+        PixelStore out = pixels.allocateLike(pixels.format(), (long) width * height);
+        RowBands.forEach(pool, width, height, (startRow, endRow) -> {
+            double[] row = new double[width];
+            for (int i = startRow; i < endRow; i++) {
+                readRow(i, 0, width, row);
+                for (int j = 0; j < width; j++) {
+                    row[j] = Math.min(255, Math.max(0, (row[j] - lo) * scale));
+                }
+                out.writeRow((long) i * width, width, row);
+            }
+        });
+        return ImageMetrics.stop(timer, new GrayscaleImage(out, width, height, pool));
+    }
 
-        double[][] scaledpart = new double[imageData.length][imageData[0].length];
-        for (int i = 0; i < imageData.length; i++) {
-            for (int j = 0; j < imageData[0].length; j++) {
-                scaledpart[i][j] = imageData[i][j] * scale;
+    /**
+     * Replaces every pixel with the table entry of its histogram bin, in one pass
+     * @param table Histogram.BINS output brightnesses
+     * @return a new GrayscaleImage in the same pixel format
+     */
+    private GrayscaleImage lookedUp(double[] table){
+        PixelStore out = pixels.allocateLike(pixels.format(), (long) width * height);
+        RowBands.forEach(pool, width, height, (startRow, endRow) -> {
+            double[] row = new double[width];
+            for (int i = startRow; i < endRow; i++) {
+                readRow(i, 0, width, row);
+                for (int j = 0; j < width; j++) {
+                    row[j] = table[Histogram.bin(row[j])];
+                }
+                out.writeRow((long) i * width, width, row);
             }
+        });
+        return new GrayscaleImage(out, width, height, pool);
+    }
+
+    /**
+     * Return a new image filtered with horizontal along each row and then vertical along each column
+     * Large images are processed in cache-sized tiles, in parallel when this image is parallel
+     * A BYTE image produces a FLOAT result so the filtered values are not rounded
+     * The original image should not be modified
+     * @param horizontal kernel applied along rows
+     * @param vertical kernel applied along columns
+     * @param edges how pixels outside the image are read
+     * @return a new GrayscaleImage of the same size
+     */
+    public GrayscaleImage convolved(SeparableKernel horizontal, SeparableKernel vertical, EdgeMode edges){
+        var timer = ImageMetrics.start(Operation.CONVOLVE);
+        PixelFormat resultFormat = pixels.format() == PixelFormat.BYTE ? PixelFormat.FLOAT : pixels.format();
+        PixelStore out = pixels.allocateLike(resultFormat, (long) width * height);
+        Convolution.convolve(rowMajor(), horizontal, vertical, edges, pool, out);
+        return ImageMetrics.stop(timer, new GrayscaleImage(out, width, height, pool));
+    }
+
+    /**
+     * Return a new image blurred with a Gaussian of the given standard deviation, reflecting at the edges
+     * @param sigma blur radius in pixels
+     * @return a new GrayscaleImage of the same size
+     * @throws IllegalArgumentException if sigma is not positive
+     */
+    public GrayscaleImage gaussianBlurred(double sigma){
+        var kernel = SeparableKernel.gaussian(sigma);
+        return convolved(kernel, kernel, EdgeMode.REFLECT);
+    }
+
+    /**
+     * Return a new image where each pixel is the average of the (2 * radius + 1)^2 square around it,
+     * reflecting at the edges. Uses running sums, so large radii cost no more than small ones
+     * @param radius
+     * @return a new GrayscaleImage of the same size
+     * @throws IllegalArgumentException if radius is negative
+     */
+    public GrayscaleImage boxBlurred(int radius){
+        var kernel = SeparableKernel.box(radius);
+        return convolved(kernel, kernel, EdgeMode.REFLECT);
+    }
+
+    /**
+     * Return a new image of the Sobel gradient magnitude, sqrt(gx^2 + gy^2), which is large
+     * where the brightness changes quickly (edges) and 0 where it is flat
+     * Edge pixels are repeated outside the image
+     * @return a new GrayscaleImage of the same size
+     */
+    public GrayscaleImage sobelEdges(){
+        var gx = convolved(SeparableKernel.sobelDerivative(), SeparableKernel.sobelSmoothing(), EdgeMode.CLAMP);
+        var gy = convolved(SeparableKernel.sobelSmoothing(), SeparableKernel.sobelDerivative(), EdgeMode.CLAMP);
+        PixelStore out = gx.pixels.allocateLike(gx.pixels.format(), (long) width * height);
+        RowBands.forEach(pool, width, height, (startRow, endRow) -> {
+            double[] x = new double[width];
+            double[] y = new double[width];
+            for (int i = startRow; i < endRow; i++) {
+                gx.readRow(i, 0, width, x);
+                gy.readRow(i, 0, width, y);
+                for (int j = 0; j < width; j++) {
+                    x[j] = Math.sqrt(x[j] * x[j] + y[j] * y[j]);
+                }
+                out.writeRow((long) i * width, width, x);
+            }
+        });
+        return new GrayscaleImage(out, width, height, pool);
+    }
+
+    /**
+     * Return a new image scaled to a new size using area averaging
+     * @param width the new width
+     * @param height the new height
+     * @return a new GrayscaleImage of size width x height in the same pixel format
+     * @throws IllegalArgumentException if width or height are not positive
+     */
+    public GrayscaleImage resized(int width, int height){
+        return resized(width, height, ResizeMode.AREA);
+    }
+
+    /**
+     * Return a new image scaled to a new size
+     * BYTE images stay BYTE, so the resampled values are rounded
+     * The original image should not be modified
+     * @param width the new width
+     * @param height the new height
+     * @param mode how new pixels are computed from the old ones
+     * @return a new GrayscaleImage of size width x height in the same pixel format
+     * @throws IllegalArgumentException if width or height are not positive
+     */
+    public GrayscaleImage resized(int width, int height, ResizeMode mode){
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Image is empty");
         }
+        var timer = ImageMetrics.start(Operation.RESIZE);
+        PixelStore out = pixels.allocateLike(pixels.format(), (long) width * height);
+        Resampler.resample(this, width, height, mode, pool, out, 0);
+        return ImageMetrics.stop(timer, new GrayscaleImage(out, width, height, pool));
+    }
 
-        return new GrayscaleImage(scaledpart);
+    /**
+     * Returns one level of this image's pyramid: level 0 is this image and each level after that
+     * is half the width and height of the one before (rounded down, at least 1), area averaged
+     * The whole pyramid is built on first use, from each level to the next, into one buffer that
+     * holds every level, and cached. It adds about a third to the image's memory
+     * @param level 0 to pyramidLevels() - 1
+     * @return the image at that level, sharing the pyramid's buffer
+     * @throws IllegalArgumentException if there is no such level
+     */
+    public GrayscaleImage pyramidLevel(int level){
+        GrayscaleImage[] levels = pyramid();
+        if (level < 0 || level >= levels.length) {
+            throw new IllegalArgumentException("No pyramid level " + level);
+        }
+        return levels[level];
     }
 
+    /**
+     * @return the number of pyramid levels, down to and including the 1 x 1 level
+     */
+    public int pyramidLevels(){
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    /**
+     * Returns a copy of this image shrunk so that its longer side is maxSide, keeping the aspect ratio
+     * Shrinks the smallest pyramid level that is still at least as large, so repeated thumbnails
+     * of one image only touch a fraction of its pixels
+     * Images already small enough are returned unscaled
+     * @param maxSide the longest allowed width or height
+     * @return a GrayscaleImage no larger than maxSide x maxSide
+     * @throws IllegalArgumentException if maxSide is not positive
+     */
+    public GrayscaleImage thumbnail(int maxSide){
+        if (maxSide <= 0) {
+            throw new IllegalArgumentException("Image is empty");
+        }
+        if (Math.max(width, height) <= maxSide) {
+            return new GrayscaleImage(pixels, offset, rowStride, colStride, width, height, pool);
+        }
+        double scale = (double) maxSide / Math.max(width, height);
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        GrayscaleImage[] levels = pyramid();
+        GrayscaleImage source = levels[0];
+        for (GrayscaleImage level : levels) {
+            if (level.width < targetWidth || level.height < targetHeight) {
+                break;
+            }
+            source = level;
+        }
+        if (source.width == targetWidth && source.height == targetHeight) {
+            return source;
+        }
+        return source.resized(targetWidth, targetHeight);
+    }
+
+    private GrayscaleImage[] pyramid(){
+        GrayscaleImage[] levels = pyramid;
+        if (levels != null) {
+            return levels;
+        }
+
+        levels = new GrayscaleImage[pyramidLevels()];
+        levels[0] = this;
+        long total = 0;
+        for (int level = 1, w = width, h = height; level < levels.length; level++) {
+            w = Math.max(1, w / 2);
+            h = Math.max(1, h / 2);
+            total += (long) w * h;
+        }
+        if (total > 0) {
+            PixelStore store = pixels.allocateLike(pixels.format(), total);
+            long levelOffset = 0;
+            for (int level = 1; level < levels.length; level++) {
+                var previous = levels[level - 1];
+                int w = Math.max(1, previous.width / 2);
+                int h = Math.max(1, previous.height / 2);
+                Resampler.resample(previous, w, h, ResizeMode.AREA, pool, store, levelOffset);
+                levels[level] = new GrayscaleImage(store, levelOffset, w, 1, w, h, pool);
+                levelOffset += (long) w * h;
+            }
+        }
+        pyramid = levels;
+        return levels;
+    }
 
     /**
      * Returns a new grayscale image that has been "mirrored" across the y-axis
      * In other words, each row of the image should be reversed
      * The original image should be unchanged
+     * The result is a view that reads this image's buffer right to left, so no pixels are copied
      * @return a new GrayscaleImage that is a mirrored version of the this
      */
     public GrayscaleImage mirrored(){
-        double[][] croppedData = new double[imageData.length][imageData[0].length];
+        return new GrayscaleImage(pixels, index(0, width - 1), rowStride, -colStride, width, height, pool);
+    }
 
-        for (int i = 0; i < imageData.length; i++) {
-            for (int j = 0; j < imageData[0].length; j++) {
-                croppedData[i][j] = imageData[i][imageData[0].length - 1 - j];
-            }
-        }
+    /**
+     * Returns a new grayscale image that has been flipped across the x-axis, so the rows are in reverse order
+     * Like mirrored(), the result is a view and no pixels are copied
+     * @return a new GrayscaleImage that is an upside-down version of this
+     */
+    public GrayscaleImage flippedVertically(){
+        return new GrayscaleImage(pixels, index(height - 1, 0), -rowStride, colStride, width, height, pool);
+    }
+
+    /**
+     * Returns a new grayscale image with rows and columns swapped: pixel (x, y) of the result is pixel (y, x) of this
+     * The result is a view, so it composes with the other views in constant time. Its rows run down the
+     * columns of this image, so compacted() (which copies in cache-sized blocks) is worthwhile before
+     * running many full-image operations on a large transposed image
+     * @return a new height x width GrayscaleImage
+     */
+    public GrayscaleImage transposed(){
+        return new GrayscaleImage(pixels, offset, colStride, rowStride, height, width, pool);
+    }
+
+    /**
+     * Returns a new grayscale image rotated a quarter turn clockwise, as a view like transposed()
+     * @return a new height x width GrayscaleImage
+     */
+    public GrayscaleImage rotated90(){
+        return transposed().mirrored();
+    }
+
+    /**
+     * Returns a new grayscale image rotated half a turn, as a view like mirrored()
+     * @return a new GrayscaleImage of the same size
+     */
+    public GrayscaleImage rotated180(){
+        return mirrored().flippedVertically();
+    }
 
-        return new GrayscaleImage(croppedData);
+    /**
+     * Returns a new grayscale image rotated a quarter turn counterclockwise, as a view like transposed()
+     * @return a new height x width GrayscaleImage
+     */
+    public GrayscaleImage rotated270(){
+        return transposed().flippedVertically();
     }
 
     /**
      * Returns a new GrayscaleImage of size width x height, containing the part of `this`
      * from startRow -> startRow + height, startCol -> startCol + width
      * The original image should be unmodified
+     * The result is a view that shares this image's buffer, so cropping takes constant time
      * @param startRow
      * @param startCol
      * @param width
@@ -199,22 +1082,9 @@ public class GrayscaleImage {
      * @throws IllegalArgumentException if the specified rectangle goes outside the bounds of the original image
      */
     public GrayscaleImage cropped(int startRow, int startCol, int width, int height) throws IllegalArgumentException{
-        int endRow = startRow + (height - 1); // Last row index in source data required for crop
-        int endCol = startCol + (width - 1); // Last column index in source data required for crop
-
-        // ensure the target end indexes exist in the source image
-        if (endRow >= imageData.length || endCol >= imageData[0].length) {
-            throw new IllegalArgumentException("Cropped row and column out of bounds");
-        }
-
-        double[][] croppedData = new double[height][width];
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                croppedData[i][j] = imageData[i + startRow][j + startCol];
-            }
-        }
+        checkRegion(startRow, startCol, width, height);
 
-        return new GrayscaleImage(croppedData);
+        return new GrayscaleImage(pixels, index(startRow, startCol), rowStride, colStride, width, height, pool);
     }
 
     /**
@@ -225,13 +1095,14 @@ public class GrayscaleImage {
      * If the number of pixels to be removed is odd, remove 1 fewer pixel from the left or top part
      * (note this convention should be SIMPLER/EASIER to implement than the alternative)
      * The original image should not be changed
+     * Like cropped(), the result is a view that shares this image's buffer
      * @return a new, square, GrayscaleImage
      */
     public GrayscaleImage squarified(){
-        int numRows = imageData.length;
-        int numColumns = imageData[0].length;
+        int numRows = height;
+        int numColumns = width;
         if (numRows == numColumns) {
-            return new GrayscaleImage(imageData);
+            return new GrayscaleImage(pixels, offset, rowStride, colStride, width, height, pool);
         }
 
         if (numRows > numColumns) {
@@ -252,15 +1123,245 @@ public class GrayscaleImage {
 
        */
 
+    /**
+     * Starts a lazy chain of operations on this image
+     * Unlike calling the transforms directly, no intermediate images are created,
+     * the whole chain is computed in one pass when it is materialized
+     * @return an empty pipeline whose source is this image
+     */
+    public ImagePipeline pipeline(){
+        return new ImagePipeline(this);
+    }
+
+    /**
+     * Sums the pixels of a rectangle by adding up per-row sums in row order
+     * In parallel mode the row sums are computed in bands but still added in row order,
+     * so the result is bit-for-bit the same as the sequential one on every run
+     * Bounds are checked by the caller
+     */
+    private double scanSum(int startRow, int startCol, int width, int height){
+        if (!RowBands.isParallel(pool, width, height)) {
+            double sum = 0;
+            double[] row = new double[width];
+            for (int i = 0; i < height; i++) {
+                sum += rowSum(startRow + i, startCol, width, row);
+            }
+            return sum;
+        }
+
+        double[] rowSums = new double[height];
+        RowBands.forEach(pool, width, height, (bandStart, bandEnd) -> {
+            double[] row = new double[width];
+            for (int i = bandStart; i < bandEnd; i++) {
+                rowSums[i] = rowSum(startRow + i, startCol, width, row);
+            }
+        });
+        double sum = 0;
+        for (double rowSum : rowSums) {
+            sum += rowSum;
+        }
+        return sum;
+    }
+
+    /**
+     * @param scratch a buffer of at least count doubles
+     * @return the sum of count pixels of a row, starting at startCol
+     */
+    private double rowSum(int row, int startCol, int count, double[] scratch){
+        readRow(row, startCol, count, scratch);
+        return PixelKernels.sum(scratch, count);
+    }
+
+    /**
+     * Copies this image into a new, tightly packed buffer, multiplying every pixel by scale
+     * This is the single pass behind normalized() and ImagePipeline
+     * @return a new GrayscaleImage that owns its buffer
+     */
+    GrayscaleImage rescaled(double scale, PixelFormat format){
+        return rescaledInto(scale, pixels.allocateLike(format, (long) width * height));
+    }
+
+    /**
+     * @return true if this image's pixels are freed when an Arena closes, see offHeap
+     */
+    boolean arenaScoped(){
+        return pixels.arenaScoped();
+    }
+
+    /**
+     * Copies this image to memory that lives as long as it is referenced: the heap, or a mapped
+     * temporary file if it is too large for a Java array
+     * @return a copy in the same format that no Arena can free
+     */
+    GrayscaleImage detached(){
+        long size = (long) width * height;
+        PixelStore out = size <= Integer.MAX_VALUE - 8 ? PixelStore.allocate(pixels.format(), size)
+                : SegmentPixelStore.temporary(pixels.format(), size);
+        return rescaledInto(1, out);
+    }
+
+    /**
+     * Like rescaled, but writes into a zero-filled buffer supplied by the caller
+     * @param out a buffer of width * height pixels that the returned image takes ownership of
+     */
+    private GrayscaleImage rescaledInto(double scale, PixelStore out){
+        if (Math.abs(colStride) != 1) {
+            copyBlocked(scale, out);
+            return new GrayscaleImage(out, width, height, pool);
+        }
+        RowBands.forEach(pool, width, height, (startRow, endRow) -> {
+            double[] row = new double[width];
+            for (int i = startRow; i < endRow; i++) {
+                readRow(i, 0, width, row);
+                if (scale != 1) {
+                    PixelKernels.scale(row, width, scale);
+                }
+                out.writeRow((long) i * width, width, row);
+            }
+        });
+        return new GrayscaleImage(out, width, height, pool);
+    }
+
+    /**
+     * Returns a copy of the pixel data as a 2D array, indexed [row][col]
+     * Changing the returned array does not change the image
+     * @return a new array holding every pixel brightness
+     */
     public double[][] getData(){
-        return imageData;
+        double[][] data = new double[height][width];
+        for (int row = 0; row < height; row++) {
+            readRow(row, 0, width, data[row]);
+        }
+        return data;
+    }
+
+    /**
+     * Returns a copy of this image stored in a different pixel format
+     * Converting to BYTE rounds and clamps every pixel to 0-255
+     * @param format the primitive type for the new image
+     * @return a new GrayscaleImage with the same dimensions stored as format
+     */
+    public GrayscaleImage converted(PixelFormat format){
+        var timer = ImageMetrics.start(Operation.COPY);
+        return ImageMetrics.stop(timer, copyAs(format));
+    }
+
+    /**
+     * Copies this image into memory allocated from arena, outside the Java heap and out of reach of the
+     * garbage collector, in the same format. Every image computed from the copy, and any scratch buffer those
+     * operations need, is allocated from the same arena, so closing the arena frees them all at once
+     * Access stays bounds checked, and once the arena is closed any use of these images throws IllegalStateException
+     * A confined arena can only be used by the thread that created it, so parallel images need a shared arena
+     * @param arena where to allocate, e.g. Arena.ofShared() in a try-with-resources block
+     * @return an off-heap copy of this image
+     */
+    public GrayscaleImage offHeap(Arena arena){
+        var timer = ImageMetrics.start(Operation.COPY);
+        return ImageMetrics.stop(timer, rescaledInto(1, SegmentPixelStore.allocate(arena, pixels.format(), (long) width * height)));
+    }
+
+    /**
+     * Full passes over the pixels (saving, hashing, comparing, histograms, convolution) read a row at a time
+     * On a transposed or rotated view that touches one pixel per buffer row, so those passes read
+     * from a row-major copy made BLOCK x BLOCK squares at a time instead
+     * @return this image if its rows are contiguous in the buffer, otherwise a compacted copy
+     */
+    private GrayscaleImage rowMajor(){
+        return Math.abs(colStride) == 1 ? this : rescaled(1, pixels.format());
+    }
+
+    /**
+     * Copies a transposed or rotated view, whose rows are columns of the underlying buffer, into out
+     * Reading such a row directly touches one pixel per buffer row, so instead the copy goes a
+     * BLOCK x BLOCK square at a time: each output column of the square is one contiguous run of a
+     * buffer row, and the square is then written out row by row. Both sides stay in cache
+     */
+    private void copyBlocked(double scale, PixelStore out){
+        final int BLOCK = 64;
+        RowBands.forEach(pool, width, height, (startRow, endRow) -> {
+            double[] column = new double[BLOCK];
+            double[][] block = new double[BLOCK][BLOCK];
+            for (int r0 = startRow; r0 < endRow; r0 += BLOCK) {
+                int bh = Math.min(BLOCK, endRow - r0);
+                for (int c0 = 0; c0 < width; c0 += BLOCK) {
+                    int bw = Math.min(BLOCK, width - c0);
+                    for (int c = 0; c < bw; c++) {
+                        // down an output column is along a buffer row when the view is transposed
+                        pixels.readRow(index(r0, c0 + c), rowStride, bh, column);
+                        for (int r = 0; r < bh; r++) {
+                            block[r][c] = column[r] * scale;
+                        }
+                    }
+                    for (int r = 0; r < bh; r++) {
+                        out.writeRow((long) (r0 + r) * width + c0, bw, block[r]);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns a copy of this image in its own tightly packed buffer
+     * A small view of a large image keeps the whole parent buffer alive,
+     * compacting it lets the parent be garbage collected
+     * @return a new GrayscaleImage equal to this one that shares no pixels with it
+     */
+    public GrayscaleImage compacted(){
+        var timer = ImageMetrics.start(Operation.COPY);
+        return ImageMetrics.stop(timer, copyAs(pixels.format()));
+    }
+
+    /**
+     * Copies this image row by row into a new buffer of the given format
+     * @param format the primitive type for the copy
+     * @return a new GrayscaleImage that owns the copied buffer
+     */
+    private GrayscaleImage copyAs(PixelFormat format){
+        return rescaled(1, format);
+    }
+
+    /**
+     * Returns a view of this image whose pixel loops run in parallel on the common ForkJoinPool
+     * Images computed from the result are parallel too. Small images still run on the calling thread
+     * @return a parallel image sharing this image's pixels
+     */
+    public GrayscaleImage parallel(){
+        return parallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns a view of this image whose pixel loops run in parallel on the given pool
+     * Images computed from the result use the same pool. Small images still run on the calling thread
+     * @param pool where to run row bands
+     * @return a parallel image sharing this image's pixels
+     */
+    public GrayscaleImage parallel(ForkJoinPool pool){
+        if (pool == null) {
+            throw new IllegalArgumentException("pool must not be null");
+        }
+        return new GrayscaleImage(pixels, offset, rowStride, colStride, width, height, pool);
+    }
+
+    /**
+     * @return a view of this image whose pixel loops run on the calling thread
+     */
+    public GrayscaleImage sequential(){
+        return new GrayscaleImage(pixels, offset, rowStride, colStride, width, height, null);
+    }
+
+    public boolean isParallel(){
+        return pool != null;
+    }
+
+    public PixelFormat format(){
+        return pixels.format();
     }
 
     public int width(){
-        return imageData[0].length;
+        return width;
     }
 
     public int height(){
-        return imageData.length;
+        return height;
     }
-}
\ No newline at end of file
+}
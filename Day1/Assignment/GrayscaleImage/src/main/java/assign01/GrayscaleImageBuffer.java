@@ -0,0 +1,200 @@
+package assign01;
+
+/**
+ * A mutable grayscale image for processing loops that must not allocate, such as per-frame video work
+ * Where GrayscaleImage returns a new image from every operation, a buffer is changed in place or
+ * written into another buffer the caller already owns. The pixel storage and a one-row scratch
+ * array are allocated once, so a loop that reuses the same buffers allocates nothing after the first frame
+ * A buffer has a fixed capacity in pixels, and its width and height change as it is cropped or refilled
+ * Pixels are stored in the format chosen at creation, so a BYTE buffer rounds normalized values to
+ * whole numbers where GrayscaleImage.normalized() would switch to FLOAT
+ * Not thread safe, and every operation runs on the calling thread
+ */
+public final class GrayscaleImageBuffer {
+    private final PixelStore pixels; // row-major, row r starts at r * width
+    private int width;
+    private int height;
+    private double[] row;            // scratch row, grown when a wider image is copied in
+
+    /**
+     * Creates a zero-filled width x height buffer, which is also its capacity
+     * @throws IllegalArgumentException if width or height are not positive, or the buffer is too large for the heap
+     */
+    public GrayscaleImageBuffer(int width, int height, PixelFormat format){
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Image is empty");
+        }
+        this.pixels = PixelStore.allocate(format, (long) width * height);
+        this.width = width;
+        this.height = height;
+        this.row = new double[width];
+    }
+
+    /**
+     * @return a new buffer holding a copy of image, in the image's format
+     */
+    public static GrayscaleImageBuffer of(GrayscaleImage image){
+        var buffer = new GrayscaleImageBuffer(image.width(), image.height(), image.format());
+        buffer.copyFrom(image);
+        return buffer;
+    }
+
+    /**
+     * Replaces the contents of this buffer with a copy of image, one row at a time
+     * @throws IllegalArgumentException if image has more pixels than the buffer's capacity
+     */
+    public void copyFrom(GrayscaleImage image){
+        int newWidth = image.width();
+        int newHeight = image.height();
+        reshape(newWidth, newHeight);
+        for (int r = 0; r < newHeight; r++) {
+            image.readRow(r, 0, newWidth, row);
+            pixels.writeRow((long) r * newWidth, newWidth, row);
+        }
+    }
+
+    /**
+     * @return a new immutable image with a copy of the current pixels, in this buffer's format
+     */
+    public GrayscaleImage toImage(){
+        PixelStore copy = PixelStore.allocate(pixels.format(), (long) width * height);
+        for (int r = 0; r < height; r++) {
+            pixels.readRow(index(r, 0), 1, width, row);
+            copy.writeRow(index(r, 0), width, row);
+        }
+        return new GrayscaleImage(copy, width, height, null);
+    }
+
+    /**
+     * Scales every pixel in place so that the average brightness is 127, like GrayscaleImage.normalized()
+     * An all-zero image is left as it is
+     */
+    public void normalize(){
+        double average = averageBrightness();
+        if (average == 0) {
+            return;
+        }
+        double scale = 127 / average;
+        for (int r = 0; r < height; r++) {
+            pixels.readRow(index(r, 0), 1, width, row);
+            PixelKernels.scale(row, width, scale);
+            pixels.writeRow(index(r, 0), width, row);
+        }
+    }
+
+    /**
+     * Flips the image left to right in place, like GrayscaleImage.mirrored()
+     */
+    public void mirror(){
+        for (int r = 0; r < height; r++) {
+            // reading the row backwards reverses it
+            pixels.readRow(index(r, width - 1), -1, width, row);
+            pixels.writeRow(index(r, 0), width, row);
+        }
+    }
+
+    /**
+     * Copies a rectangle of this image into destination, which becomes width x height
+     * destination may be this buffer, which crops it in place
+     * @param destination a buffer with a capacity of at least width * height pixels
+     * @throws IllegalArgumentException if the rectangle goes outside this image or doesn't fit in destination
+     */
+    public void cropInto(GrayscaleImageBuffer destination, int startRow, int startCol, int width, int height){
+        if (startRow < 0 || startCol < 0 || width <= 0 || height <= 0
+                || height > this.height - startRow || width > this.width - startCol) {
+            throw new IllegalArgumentException("Cropped row and column out of bounds");
+        }
+        int sourceWidth = this.width;
+        destination.reshape(width, height);
+        // going forward is safe in place: row r is written at r * width, never after where row r + 1 is read
+        for (int r = 0; r < height; r++) {
+            pixels.readRow((long) (startRow + r) * sourceWidth + startCol, 1, width, destination.row);
+            destination.pixels.writeRow((long) r * width, width, destination.row);
+        }
+    }
+
+    /**
+     * Crops the image in place to the square at its top left corner, like GrayscaleImage.squarified()
+     */
+    public void squarify(){
+        int size = Math.min(width, height);
+        cropInto(this, 0, 0, size, size);
+    }
+
+    /**
+     * @return the average brightness of the current pixels
+     */
+    public double averageBrightness(){
+        double sum = 0;
+        for (int r = 0; r < height; r++) {
+            pixels.readRow(index(r, 0), 1, width, row);
+            sum += PixelKernels.sum(row, width);
+        }
+        return sum / ((double) width * height);
+    }
+
+    /**
+     * @param x the column
+     * @param y the row
+     * @throws IllegalArgumentException if (x, y) is outside the image
+     */
+    public double getPixel(int x, int y){
+        checkPixel(x, y);
+        return pixels.get(index(y, x));
+    }
+
+    /**
+     * Sets one pixel, rounded and clamped to 0-255 in a BYTE buffer
+     * @param x the column
+     * @param y the row
+     * @throws IllegalArgumentException if (x, y) is outside the image
+     */
+    public void setPixel(int x, int y, double value){
+        checkPixel(x, y);
+        pixels.set(index(y, x), value);
+    }
+
+    private void checkPixel(int x, int y){
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            throw new IllegalArgumentException("Pixel (" + x + ", " + y + ") is outside the image");
+        }
+    }
+
+    /**
+     * Changes the dimensions without moving any pixels, and grows the scratch row if needed
+     */
+    private void reshape(int newWidth, int newHeight){
+        if ((long) newWidth * newHeight > pixels.size()) {
+            throw new IllegalArgumentException(newWidth + "x" + newHeight + " image does not fit in a buffer of "
+                    + pixels.size() + " pixels");
+        }
+        if (row.length < newWidth) {
+            row = new double[newWidth];
+        }
+        width = newWidth;
+        height = newHeight;
+    }
+
+    private long index(int r, int col){
+        return (long) r * width + col;
+    }
+
+    public int width(){
+        return width;
+    }
+
+    public int height(){
+        return height;
+    }
+
+    /**
+     * @return the most pixels this buffer can hold
+     */
+    public long capacity(){
+        return pixels.size();
+    }
+
+    public PixelFormat format(){
+        return pixels.format();
+    }
+}
@@ -0,0 +1,131 @@
+package assign01;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Counts how many pixels of a GrayscaleImage fall in each of 256 one-unit brightness bins
+ * Bin b holds the pixels with b <= brightness < b + 1, values below 0 are counted in bin 0
+ * and values of 255 or more in bin 255. For BYTE images every bin is a single exact value
+ * The exact minimum and maximum are tracked separately from the bins
+ * Built in one pass, in parallel bands with per-band counts when the image is parallel
+ * Read-only once built, so it can be shared between threads
+ */
+public class Histogram {
+    public static final int BINS = 256;
+
+    private final long[] counts = new long[BINS];
+    private final long total;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    Histogram(GrayscaleImage image, ForkJoinPool pool) {
+        int width = image.width();
+        int height = image.height();
+        total = (long) width * height;
+
+        RowBands.forEach(pool, width, height, (startRow, endRow) -> {
+            long[] bandCounts = new long[BINS];
+            double bandMin = Double.POSITIVE_INFINITY;
+            double bandMax = Double.NEGATIVE_INFINITY;
+            double[] row = new double[width];
+            for (int r = startRow; r < endRow; r++) {
+                image.readRow(r, 0, width, row);
+                for (int c = 0; c < width; c++) {
+                    double value = row[c];
+                    bandCounts[bin(value)]++;
+                    bandMin = Math.min(bandMin, value);
+                    bandMax = Math.max(bandMax, value);
+                }
+            }
+            merge(bandCounts, bandMin, bandMax);
+        });
+    }
+
+    private synchronized void merge(long[] bandCounts, double bandMin, double bandMax) {
+        for (int b = 0; b < BINS; b++) {
+            counts[b] += bandCounts[b];
+        }
+        min = Math.min(min, bandMin);
+        max = Math.max(max, bandMax);
+    }
+
+    /**
+     * @return the bin a brightness value is counted in
+     */
+    static int bin(double value) {
+        if (value >= BINS - 1) {
+            return BINS - 1;
+        }
+        return value > 0 ? (int) value : 0;
+    }
+
+    /**
+     * @param bin 0 - 255
+     * @return the number of pixels in the bin
+     */
+    public long count(int bin) {
+        return counts[bin];
+    }
+
+    /**
+     * @return the number of pixels in the image
+     */
+    public long total() {
+        return total;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+
+    /**
+     * Finds the nearest-rank percentile: the lowest bin such that at least
+     * percent% of the pixels are in it or a lower bin
+     * @param percent 0 - 100
+     * @return the lower edge of that bin, clamped to min() and max()
+     * @throws IllegalArgumentException if percent is outside 0 - 100
+     */
+    public double percentile(double percent) {
+        if (!(percent >= 0 && percent <= 100)) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * total));
+        long seen = 0;
+        for (int b = 0; b < BINS; b++) {
+            seen += counts[b];
+            if (seen >= rank) {
+                return Math.min(Math.max(b, min), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Builds the histogram equalization lookup table: each bin maps to 255 times the fraction of
+     * pixels below or in it, rescaled so the darkest occupied bin maps to 0
+     * @return a table of BINS output brightnesses, or null if every pixel is in the same bin
+     */
+    double[] equalizationTable() {
+        long darkest = 0;
+        for (long count : counts) {
+            if (count != 0) {
+                darkest = count;
+                break;
+            }
+        }
+        if (darkest == total) {
+            return null;
+        }
+        double[] table = new double[BINS];
+        long seen = 0;
+        for (int b = 0; b < BINS; b++) {
+            seen += counts[b];
+            table[b] = Math.max(0, 255.0 * (seen - darkest) / (total - darkest));
+        }
+        return table;
+    }
+}
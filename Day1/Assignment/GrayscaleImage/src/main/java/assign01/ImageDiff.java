@@ -0,0 +1,209 @@
+package assign01;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * How two images of the same size differ, from GrayscaleImage.diff
+ * Every statistic comes from one pass over both images, a row band at a time in parallel mode
+ * A pixel is changed if its absolute difference is more than the tolerance, the error statistics
+ * count every difference including the tolerated ones
+ * A diff that stopped at the first change only covers the rows read until then, see complete()
+ * Read-only once built, so it can be shared between threads
+ */
+public class ImageDiff {
+    /**
+     * A rectangle of an image, in the argument order of GrayscaleImage.cropped
+     */
+    public record Region(int startRow, int startCol, int width, int height) {}
+
+    private final int width;
+    private final int height;
+    private final double tolerance;
+    private final GrayscaleImage diffImage;
+    private final boolean complete;
+
+    // merged from the bands
+    private long comparedPixels;
+    private long changedPixels;
+    private double maxError;
+    private int minRow = Integer.MAX_VALUE;
+    private int minCol = Integer.MAX_VALUE;
+    private int maxRow = -1;
+    private int maxCol = -1;
+    // added up in row order, so they don't depend on how the rows were split
+    private final double absoluteErrorSum;
+    private final double squaredErrorSum;
+
+    /**
+     * @param out where to write the absolute differences, width * height pixels, or null for no diff image
+     */
+    ImageDiff(GrayscaleImage expected, GrayscaleImage actual, double tolerance, boolean stopAtFirstChange,
+              PixelStore out, ForkJoinPool pool) {
+        width = expected.width();
+        height = expected.height();
+        this.tolerance = tolerance;
+
+        double[] rowAbsolute = new double[height];
+        double[] rowSquared = new double[height];
+        var changed = new AtomicBoolean();
+        RowBands.forEach(pool, width, height, (startRow, endRow) -> {
+            double[] a = new double[width];
+            double[] diff = new double[width];
+            long bandCompared = 0;
+            long bandChanged = 0;
+            double bandMax = 0;
+            int bandMinRow = Integer.MAX_VALUE, bandMinCol = Integer.MAX_VALUE, bandMaxRow = -1, bandMaxCol = -1;
+            for (int r = startRow; r < endRow; r++) {
+                if (stopAtFirstChange && changed.get()) {
+                    break;
+                }
+                expected.readRow(r, 0, width, a);
+                actual.readRow(r, 0, width, diff);
+                PixelKernels.absDiff(a, diff, diff, width);
+                rowAbsolute[r] = PixelKernels.sum(diff, width);
+                rowSquared[r] = PixelKernels.sumOfSquares(diff, width);
+                bandCompared += width;
+                // !(d <= tolerance) also treats NaN differences as changes
+                for (int c = 0; c < width; c++) {
+                    double d = diff[c];
+                    if (!(d <= tolerance)) {
+                        bandChanged++;
+                        bandMinCol = Math.min(bandMinCol, c);
+                        bandMaxCol = Math.max(bandMaxCol, c);
+                        bandMinRow = Math.min(bandMinRow, r);
+                        bandMaxRow = r;
+                    }
+                    if (d > bandMax || d != d) {
+                        bandMax = d;
+                    }
+                }
+                if (out != null) {
+                    out.writeRow((long) r * width, width, diff);
+                }
+                if (bandChanged > 0 && stopAtFirstChange) {
+                    changed.set(true);
+                }
+            }
+            merge(bandCompared, bandChanged, bandMax, bandMinRow, bandMinCol, bandMaxRow, bandMaxCol);
+        });
+
+        double absolute = 0;
+        double squared = 0;
+        for (int r = 0; r < height; r++) {
+            absolute += rowAbsolute[r];
+            squared += rowSquared[r];
+        }
+        absoluteErrorSum = absolute;
+        squaredErrorSum = squared;
+        complete = comparedPixels == (long) width * height;
+        diffImage = out == null ? null : new GrayscaleImage(out, width, height, pool);
+    }
+
+    private synchronized void merge(long compared, long changed, double max,
+                                    int bandMinRow, int bandMinCol, int bandMaxRow, int bandMaxCol) {
+        comparedPixels += compared;
+        changedPixels += changed;
+        if (max > maxError || max != max) {
+            maxError = max;
+        }
+        minRow = Math.min(minRow, bandMinRow);
+        minCol = Math.min(minCol, bandMinCol);
+        maxRow = Math.max(maxRow, bandMaxRow);
+        maxCol = Math.max(maxCol, bandMaxCol);
+    }
+
+    /**
+     * @return true if some pixel differs by more than the tolerance
+     */
+    public boolean hasChanges() {
+        return changedPixels > 0;
+    }
+
+    /**
+     * @return true if every pixel was compared, false if the diff stopped at the first change
+     */
+    public boolean complete() {
+        return complete;
+    }
+
+    /**
+     * @return the number of pixels that differ by more than the tolerance
+     */
+    public long changedPixels() {
+        return changedPixels;
+    }
+
+    /**
+     * @return the number of pixel pairs the statistics cover
+     */
+    public long comparedPixels() {
+        return comparedPixels;
+    }
+
+    /**
+     * @return the smallest rectangle holding every changed pixel, or null if there are none
+     */
+    public Region changedRegion() {
+        if (!hasChanges()) {
+            return null;
+        }
+        return new Region(minRow, minCol, maxCol - minCol + 1, maxRow - minRow + 1);
+    }
+
+    /**
+     * @return the largest absolute difference
+     */
+    public double maxError() {
+        return maxError;
+    }
+
+    /**
+     * @return the mean absolute difference
+     */
+    public double meanError() {
+        return comparedPixels == 0 ? 0 : absoluteErrorSum / comparedPixels;
+    }
+
+    /**
+     * @return the mean squared difference
+     */
+    public double meanSquaredError() {
+        return comparedPixels == 0 ? 0 : squaredErrorSum / comparedPixels;
+    }
+
+    /**
+     * Peak signal-to-noise ratio for 8-bit brightnesses, 10 * log10(255^2 / MSE)
+     * @return the PSNR in decibels, positive infinity for identical images
+     */
+    public double psnr() {
+        double mse = meanSquaredError();
+        return mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255.0 * 255.0 / mse);
+    }
+
+    /**
+     * @return an image of the absolute difference at each pixel, or null if it wasn't asked for
+     */
+    public GrayscaleImage diffImage() {
+        return diffImage;
+    }
+
+    public double tolerance() {
+        return tolerance;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s%d of %d pixels changed (tolerance %s), max error %s, mean error %.4f, PSNR %.2f dB, region %s",
+                complete ? "" : "partial: ", changedPixels, comparedPixels, tolerance, maxError, meanError(), psnr(),
+                changedRegion());
+    }
+}
@@ -0,0 +1,208 @@
+package assign01;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads images in the background so that the download, decode and grayscale conversion of many
+ * images overlap instead of running one after another on the caller's thread
+ * At most maxConcurrent loads run at once, the rest wait their turn. By default every load gets its
+ * own virtual thread, which costs almost nothing while it waits on the network or the disk
+ * Cancelling a returned future, or letting it time out, interrupts the load if it has started and
+ * skips it if it hasn't, and frees its slot for the next load
+ * Close the loader to interrupt everything still running, pending futures then complete with a CancellationException
+ */
+public class ImageLoader implements AutoCloseable {
+    /**
+     * One blocking load, run on a worker thread
+     */
+    @FunctionalInterface
+    private interface Load {
+        GrayscaleImage run() throws IOException;
+    }
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor; // close() only shuts down executors this loader created
+    private final Semaphore slots;
+
+    /**
+     * Creates a loader that runs each load on its own virtual thread
+     * @param maxConcurrent the most loads in progress at once
+     * @throws IllegalArgumentException if maxConcurrent is not positive
+     */
+    public ImageLoader(int maxConcurrent){
+        this(maxConcurrent, Executors.newVirtualThreadPerTaskExecutor(), true);
+    }
+
+    /**
+     * Creates a loader that runs loads on executor, which the caller keeps ownership of
+     * A waiting load occupies an executor thread, so executor should have at least maxConcurrent threads
+     * @param maxConcurrent the most loads in progress at once
+     * @throws IllegalArgumentException if maxConcurrent is not positive
+     */
+    public ImageLoader(int maxConcurrent, ExecutorService executor){
+        this(maxConcurrent, executor, false);
+    }
+
+    private ImageLoader(int maxConcurrent, ExecutorService executor, boolean ownsExecutor){
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("At least one load must be allowed at a time");
+        }
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.slots = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * Downloads and decodes an image, like GrayscaleImage(URL), without a time limit
+     */
+    public CompletableFuture<GrayscaleImage> load(URL url){
+        return load(url, null);
+    }
+
+    /**
+     * Downloads and decodes an image, like GrayscaleImage(URL)
+     * The timeout covers waiting for a slot as well as the load itself, and is also applied to the
+     * connection's connect and read timeouts so that a stalled server can't hold on to a slot
+     * Whichever of those fires first, the future fails with a TimeoutException
+     * @param timeout how long to wait before failing with a TimeoutException, or null to wait forever
+     * @return a future for the image, failing with the IOException if it can't be loaded
+     */
+    public CompletableFuture<GrayscaleImage> load(URL url, Duration timeout){
+        return submit(() -> {
+            var connection = url.openConnection();
+            if (timeout != null) {
+                int millis = (int) Math.max(1, Math.min(Integer.MAX_VALUE, timeout.toMillis()));
+                connection.setConnectTimeout(millis);
+                connection.setReadTimeout(millis);
+            }
+            try (var input = connection.getInputStream()) {
+                return new GrayscaleImage(input);
+            }
+        }, timeout);
+    }
+
+    /**
+     * Reads and decodes an image file, like GrayscaleImage(Path), without a time limit
+     */
+    public CompletableFuture<GrayscaleImage> load(Path path){
+        return load(path, null);
+    }
+
+    /**
+     * Reads and decodes an image file, like GrayscaleImage(Path)
+     * @param timeout how long to wait, including for a slot, before failing with a TimeoutException, or null to wait forever
+     * @return a future for the image, failing with the IOException if it can't be loaded
+     */
+    public CompletableFuture<GrayscaleImage> load(Path path, Duration timeout){
+        return submit(() -> new GrayscaleImage(path), timeout);
+    }
+
+    private CompletableFuture<GrayscaleImage> submit(Load load, Duration timeout){
+        var result = new CompletableFuture<GrayscaleImage>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                result.completeExceptionally(new CancellationException("Image loader closed"));
+                return;
+            }
+            try {
+                // cancelled or timed out while waiting for a slot
+                if (!result.isDone()) {
+                    result.complete(load.run());
+                }
+            } catch (IOException e) {
+                // the socket's timer can beat orTimeout's, callers see the same exception either way
+                result.completeExceptionally(timeout != null && causedBySocketTimeout(e) ? timedOut(timeout, e) : e);
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                slots.release();
+            }
+        });
+        if (timeout != null) {
+            result.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        result.whenComplete((image, error) -> {
+            if (result.isCancelled() || error instanceof TimeoutException) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * ImageIO wraps errors from the stream it decodes, e.g. a body that stalls mid-image arrives as an
+     * IIOException caused by the SocketTimeoutException
+     */
+    static boolean causedBySocketTimeout(Throwable e){
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static TimeoutException timedOut(Duration timeout, Throwable cause){
+        var e = new TimeoutException("Image load took longer than " + timeout);
+        e.initCause(cause);
+        return e;
+    }
+
+    /**
+     * Combines loads into one future, completing with the images in the same order once all have loaded
+     * If any load fails the combined future fails with its error, and the other loads are cancelled
+     * Cancelling the combined future cancels every load
+     * @param loads futures returned by load
+     * @return a future for every image
+     */
+    public static CompletableFuture<List<GrayscaleImage>> allOf(List<CompletableFuture<GrayscaleImage>> loads){
+        var all = CompletableFuture.allOf(loads.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> loads.stream().map(CompletableFuture::join).toList());
+        for (var load : loads) {
+            load.whenComplete((image, error) -> {
+                if (error != null) {
+                    all.completeExceptionally(error);
+                }
+            });
+        }
+        all.whenComplete((images, error) -> {
+            if (error != null) {
+                loads.forEach(load -> load.cancel(true));
+            }
+        });
+        return all;
+    }
+
+    /**
+     * @return the number of loads that could start right now without waiting
+     */
+    public int availableSlots(){
+        return slots.availablePermits();
+    }
+
+    /**
+     * Interrupts every load still running or waiting, if the loader created its own executor
+     * A loader given an executor leaves it running, the caller shuts it down
+     */
+    @Override
+    public void close(){
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package assign01;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe map from keys to images that keeps at most a budget of pixel bytes,
+ * evicting the least recently used images first
+ * An image bigger than the whole budget is never kept
+ * @param <K> the key type, compared with equals and hashCode
+ */
+final class ImageLru<K> {
+    private final long maxBytes;
+    // access ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<K, GrayscaleImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxBytes the most pixel bytes to keep
+     * @throws IllegalArgumentException if maxBytes is negative
+     */
+    ImageLru(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache budget must not be negative");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Looks up key, counting a hit or a miss and marking the entry as recently used
+     * @return the cached image, or null
+     */
+    synchronized GrayscaleImage get(K key) {
+        GrayscaleImage cached = entries.get(key);
+        if (cached != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return cached;
+    }
+
+    /**
+     * Caches image under key unless another image got there first, evicting as needed
+     * @return the image now cached under key (image itself, or the one already there), or image if it is too big to keep
+     */
+    GrayscaleImage putIfAbsent(K key, GrayscaleImage image) {
+        long weight = weight(image);
+        if (weight > maxBytes) {
+            return image;
+        }
+        synchronized (this) {
+            GrayscaleImage raced = entries.putIfAbsent(key, image);
+            if (raced != null) {
+                return raced;
+            }
+            bytes += weight;
+            Iterator<Map.Entry<K, GrayscaleImage>> eldest = entries.entrySet().iterator();
+            while (bytes > maxBytes) {
+                bytes -= weight(eldest.next().getValue());
+                eldest.remove();
+                evictions++;
+            }
+        }
+        return image;
+    }
+
+    private static long weight(GrayscaleImage image) {
+        return (long) image.width() * image.height() * image.format().bytesPerPixel();
+    }
+
+    /**
+     * Drops every entry, the counters are kept
+     */
+    synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    synchronized DerivedImageCache.Stats stats() {
+        return new DerivedImageCache.Stats(hits, misses, evictions, entries.size(), bytes);
+    }
+
+    long maxBytes() {
+        return maxBytes;
+    }
+}
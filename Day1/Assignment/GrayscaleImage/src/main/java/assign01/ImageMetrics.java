@@ -0,0 +1,203 @@
+package assign01;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional per-operation instrumentation: call counts, latency histograms, pixels processed and bytes allocated
+ * Off unless the JVM runs with -Dassign01.metrics=true. The switch is a static final constant, so when it is
+ * off start() returns null, stop() returns at once and the JIT removes both from the instrumented code
+ * When it is on, each operation's numbers are published over JMX as an OperationMetricsMXBean and every
+ * call is also a JFR ImageOperationEvent, so a flight recording shows where a batch job spends its time
+ * Operations that call other operations (e.g. sobelEdges convolving twice) count the time of both
+ */
+final class ImageMetrics {
+    /** True if operations are being measured */
+    static final boolean ENABLED = Boolean.getBoolean("assign01.metrics");
+
+    /** The timed operations, each one a JMX bean named after it in lower case */
+    enum Operation {
+        DECODE, ENCODE_PNG, ENCODE_PGM, NORMALIZE, COPY, PIPELINE, CONVOLVE, RESIZE, TONE_MAP, HISTOGRAM, DIFF, HASH
+    }
+
+    /** One call in progress */
+    static final class Timer {
+        private final Operation operation;
+        private final long startNanos;
+        private final ImageOperationEvent event;
+
+        private Timer(Operation operation) {
+            this.operation = operation;
+            this.event = new ImageOperationEvent();
+            event.begin();
+            this.startNanos = System.nanoTime();
+        }
+    }
+
+    private static final ImageMetrics GLOBAL = ENABLED ? new ImageMetrics() : null;
+
+    static {
+        if (ENABLED) {
+            try {
+                GLOBAL.register(ManagementFactory.getPlatformMBeanServer());
+            } catch (JMException e) {
+                // still measured and sent to JFR, only the JMX view is missing
+                System.err.println("Could not register assign01 metrics with JMX: " + e.getMessage());
+            }
+        }
+    }
+
+    private final OperationMetrics[] operations = new OperationMetrics[Operation.values().length];
+
+    ImageMetrics() {
+        for (Operation operation : Operation.values()) {
+            operations[operation.ordinal()] = new OperationMetrics(operation.name().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Starts timing an operation
+     * @return the call in progress, or null when metrics are off
+     */
+    static Timer start(Operation operation) {
+        return ENABLED ? GLOBAL.begin(operation) : null;
+    }
+
+    /**
+     * Finishes timing an operation that produced result, counting its pixels and their bytes as allocated
+     * @return result, so an instrumented method can end with return stop(timer, ...)
+     */
+    static GrayscaleImage stop(Timer timer, GrayscaleImage result) {
+        if (ENABLED && timer != null) {
+            long pixels = (long) result.width() * result.height();
+            GLOBAL.end(timer, pixels, pixels * result.format().bytesPerPixel());
+        }
+        return result;
+    }
+
+    /**
+     * Finishes timing an operation
+     * @param timer from start, null when metrics are off
+     * @param pixels how many pixels the operation read or wrote
+     * @param bytesAllocated bytes of pixel buffers the operation allocated
+     */
+    static void stop(Timer timer, long pixels, long bytesAllocated) {
+        if (ENABLED && timer != null) {
+            GLOBAL.end(timer, pixels, bytesAllocated);
+        }
+    }
+
+    /**
+     * @return the metrics the instrumented operations record into, or null when metrics are off
+     */
+    static ImageMetrics global() {
+        return GLOBAL;
+    }
+
+    Timer begin(Operation operation) {
+        return new Timer(operation);
+    }
+
+    void end(Timer timer, long pixels, long bytesAllocated) {
+        long nanos = System.nanoTime() - timer.startNanos;
+        operations[timer.operation.ordinal()].record(nanos, pixels, bytesAllocated);
+        var event = timer.event;
+        if (event.shouldCommit()) {
+            event.operation = timer.operation.name().toLowerCase(Locale.ROOT);
+            event.pixels = pixels;
+            event.bytesAllocated = bytesAllocated;
+            event.commit();
+        }
+    }
+
+    OperationMetricsMXBean get(Operation operation) {
+        return operations[operation.ordinal()];
+    }
+
+    /**
+     * Registers one bean per operation, as assign01:type=ImageMetrics,operation=name
+     */
+    void register(MBeanServer server) throws JMException {
+        for (OperationMetrics metrics : operations) {
+            server.registerMBean(metrics, new ObjectName("assign01:type=ImageMetrics,operation=" + metrics.getOperation()));
+        }
+    }
+
+    private static final class OperationMetrics implements OperationMetricsMXBean {
+        private final String operation;
+        // replaced as a whole by reset(), a racing record may land in the old one
+        private volatile LatencyHistogram latencies = new LatencyHistogram();
+        private final LongAdder pixels = new LongAdder();
+        private final LongAdder bytesAllocated = new LongAdder();
+
+        OperationMetrics(String operation) {
+            this.operation = operation;
+        }
+
+        void record(long nanos, long pixelCount, long bytes) {
+            latencies.record(nanos);
+            pixels.add(pixelCount);
+            bytesAllocated.add(bytes);
+        }
+
+        private static double millis(double nanos) {
+            return nanos / 1e6;
+        }
+
+        @Override
+        public String getOperation() {
+            return operation;
+        }
+
+        @Override
+        public long getCount() {
+            return latencies.count();
+        }
+
+        @Override
+        public long getPixels() {
+            return pixels.sum();
+        }
+
+        @Override
+        public long getBytesAllocated() {
+            return bytesAllocated.sum();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return millis(latencies.meanNanos());
+        }
+
+        @Override
+        public double getP50Millis() {
+            return millis(latencies.percentileNanos(50));
+        }
+
+        @Override
+        public double getP90Millis() {
+            return millis(latencies.percentileNanos(90));
+        }
+
+        @Override
+        public double getP99Millis() {
+            return millis(latencies.percentileNanos(99));
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return millis(latencies.maxNanos());
+        }
+
+        @Override
+        public void reset() {
+            latencies = new LatencyHistogram();
+            pixels.reset();
+            bytesAllocated.reset();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package assign01;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for one timed GrayscaleImage operation, committed when metrics are enabled and a
+ * flight recording is running (like other custom events it is enabled by default)
+ */
+@Name("assign01.ImageOperation")
+@Label("Image Operation")
+@Category("assign01")
+@Description("A GrayscaleImage operation that read or wrote pixels")
+@StackTrace(false)
+final class ImageOperationEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Pixels")
+    long pixels;
+
+    @Label("Bytes Allocated")
+    @DataAmount
+    long bytesAllocated;
+}
@@ -0,0 +1,161 @@
+package assign01;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A lazily evaluated chain of GrayscaleImage operations
+ * Each call records an operation and returns a new pipeline, nothing is computed until
+ * materialize() or savePNG() is called. At that point the crops and mirrors become views of the
+ * source image and all the scaling collapses into one factor, so the result is
+ * written in a single pass over the source pixels with no intermediate images
+ * normalized() still needs the average of the region it applies to, which costs one read-only pass
+ * Pipelines are immutable, so a partially built chain can be shared and extended
+ */
+public class ImagePipeline {
+    private final GrayscaleImage source;
+    private final List<Op> ops;
+    private final int width;  // width after all recorded ops
+    private final int height; // height after all recorded ops
+
+    private sealed interface Op permits Crop, Mirror, Scale, Normalize {}
+    private record Crop(int startRow, int startCol, int width, int height) implements Op {}
+    private record Mirror() implements Op {}
+    private record Scale(double factor) implements Op {}
+    private record Normalize() implements Op {}
+
+    ImagePipeline(GrayscaleImage source){
+        this(source, List.of(), source.width(), source.height());
+    }
+
+    private ImagePipeline(GrayscaleImage source, List<Op> ops, int width, int height){
+        this.source = source;
+        this.ops = ops;
+        this.width = width;
+        this.height = height;
+    }
+
+    private ImagePipeline then(Op op, int newWidth, int newHeight){
+        var newOps = new ArrayList<Op>(ops.size() + 1);
+        newOps.addAll(ops);
+        newOps.add(op);
+        return new ImagePipeline(source, List.copyOf(newOps), newWidth, newHeight);
+    }
+
+    /**
+     * Records GrayscaleImage.cropped
+     * @throws IllegalArgumentException if the rectangle goes outside the image produced so far
+     */
+    public ImagePipeline cropped(int startRow, int startCol, int width, int height){
+        // subtracting, so huge sizes can't overflow past the check
+        if (startRow < 0 || startCol < 0 || width <= 0 || height <= 0
+                || height > this.height - startRow || width > this.width - startCol) {
+            throw new IllegalArgumentException("Cropped row and column out of bounds");
+        }
+        return then(new Crop(startRow, startCol, width, height), width, height);
+    }
+
+    /**
+     * Records GrayscaleImage.squarified
+     */
+    public ImagePipeline squarified(){
+        int size = Math.min(width, height);
+        if (size == width && size == height) {
+            return this;
+        }
+        return cropped(0, 0, size, size);
+    }
+
+    /**
+     * Records GrayscaleImage.mirrored
+     */
+    public ImagePipeline mirrored(){
+        return then(new Mirror(), width, height);
+    }
+
+    /**
+     * Records a uniform multiplication of every pixel by factor
+     */
+    public ImagePipeline scaled(double factor){
+        return then(new Scale(factor), width, height);
+    }
+
+    /**
+     * Records GrayscaleImage.normalized
+     */
+    public ImagePipeline normalized(){
+        return then(new Normalize(), width, height);
+    }
+
+    public int width(){
+        return width;
+    }
+
+    public int height(){
+        return height;
+    }
+
+    GrayscaleImage source(){
+        return source;
+    }
+
+    /**
+     * @return the recorded operations, value objects that are equal when their parameters are
+     */
+    List<?> ops(){
+        return ops;
+    }
+
+    /**
+     * Runs the recorded operations
+     * @return a new GrayscaleImage equal to applying each operation to the source in order
+     */
+    public GrayscaleImage materialize(){
+        var timer = ImageMetrics.start(ImageMetrics.Operation.PIPELINE);
+        // crops and mirrors are zero-copy views, so only the scaling is deferred to the final pass
+        GrayscaleImage current = source;
+        double scale = 1;
+        boolean rescaled = false;
+
+        for (Op op : ops) {
+            switch (op) {
+                case Crop c -> current = current.cropped(c.startRow(), c.startCol(), c.width(), c.height());
+                case Mirror m -> current = current.mirrored();
+                case Scale s -> {
+                    scale *= s.factor();
+                    rescaled = true;
+                }
+                case Normalize n -> {
+                    // same as current.normalized() on the image scaled so far
+                    double average = current.averageBrightness() * scale;
+                    if (average != 0) {
+                        scale *= 127 / average;
+                    }
+                    rescaled = true;
+                }
+            }
+        }
+
+        PixelFormat format = rescaled && source.format() == PixelFormat.BYTE ? PixelFormat.FLOAT : source.format();
+        return ImageMetrics.stop(timer, current.rescaled(scale, format));
+    }
+
+    /**
+     * Runs the recorded operations through cache, so a chain already applied to an equal image costs no pixel work
+     * @return an image equal to materialize(), possibly shared with earlier callers
+     */
+    public GrayscaleImage materialize(DerivedImageCache cache){
+        return cache.materialize(this);
+    }
+
+    /**
+     * Runs the recorded operations and saves the result
+     * @param filename where to write the png
+     * @throws IOException if the file can't be written
+     */
+    public void savePNG(File filename) throws IOException {
+        materialize().savePNG(filename);
+    }
+}
@@ -0,0 +1,281 @@
+package assign01;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves Cropper-style edits of local images over HTTP, one virtual thread per request
+ * GET /image?path=photos/cat.jpg&amp;ops=squarify,normalize,mirror returns the edited image as a PNG
+ * path is relative to the root directory and may not leave it. ops is a comma-separated chain applied
+ * in order, each one of squarify, normalize, mirror or crop:startRow:startCol:width:height
+ * GET /stats returns request counts, latency percentiles and cache counters as plain text
+ * The server listens on the loopback address unless given another one, so by default only this machine can reach it
+ * Decoded source images are kept in an LRU cache keyed by path, size and modification time, so
+ * popular images are decoded once, and edited results are kept in a DerivedImageCache
+ * Usage: Cropper --serve <root directory> [port]
+ */
+public class ImageServer implements AutoCloseable {
+    /** Default cache budgets, in pixel bytes */
+    static final long SOURCE_CACHE_BYTES = 256L << 20;
+    static final long RESULT_CACHE_BYTES = 256L << 20;
+    /** Deflate level for responses, fast rather than small since the client is usually close by */
+    private static final int DEFLATE_LEVEL = 1;
+
+    private record SourceKey(Path path, long size, long lastModified) {}
+
+    /** A request that can't be served, with the HTTP status to answer it with */
+    private static final class BadRequest extends Exception {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        BadRequest(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final Path root;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ImageLru<SourceKey> sources;
+    private final DerivedImageCache results;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: Cropper --serve <root directory> [port]");
+            return;
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        try {
+            var server = start(Path.of(args[0]), port, SOURCE_CACHE_BYTES, RESULT_CACHE_BYTES);
+            System.out.println("Serving " + server.root + " on http://localhost:" + server.port() + "/image?path=...&ops=...");
+        } catch (IOException ex) {
+            System.out.println("Failed to start the server: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Starts serving on the loopback address, reachable from this machine only
+     * @param root the directory images are served from
+     * @param port where to listen, 0 picks a free port
+     * @param sourceCacheBytes pixel bytes of decoded sources to keep
+     * @param resultCacheBytes pixel bytes of edited results to keep
+     * @return the running server
+     * @throws IOException if root isn't a directory or the port can't be bound
+     */
+    public static ImageServer start(Path root, int port, long sourceCacheBytes, long resultCacheBytes) throws IOException {
+        return start(root, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), sourceCacheBytes, resultCacheBytes);
+    }
+
+    /**
+     * Starts serving on a chosen address, like start(Path, int, long, long)
+     * Any host that can reach address can read every image under root
+     * @param address where to listen, e.g. new InetSocketAddress(8080) for every interface
+     */
+    public static ImageServer start(Path root, InetSocketAddress address, long sourceCacheBytes, long resultCacheBytes)
+            throws IOException {
+        Path realRoot = root.toRealPath();
+        if (!Files.isDirectory(realRoot)) {
+            throw new IOException(root + " is not a directory");
+        }
+        var imageServer = new ImageServer(realRoot, HttpServer.create(address, 0), sourceCacheBytes, resultCacheBytes);
+        var server = imageServer.server;
+        server.setExecutor(imageServer.executor);
+        server.createContext("/image", imageServer::serveImage);
+        server.createContext("/stats", imageServer::serveStats);
+        server.start();
+        return imageServer;
+    }
+
+    private ImageServer(Path root, HttpServer server, long sourceCacheBytes, long resultCacheBytes) {
+        this.root = root;
+        this.server = server;
+        sources = new ImageLru<>(sourceCacheBytes);
+        results = new DerivedImageCache(resultCacheBytes);
+    }
+
+    private void serveImage(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        // not try-with-resources, the exchange must stay open for the error response
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                throw new BadRequest(405, "Only GET is supported");
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String path = query.get("path");
+            if (path == null) {
+                throw new BadRequest(400, "Missing path parameter");
+            }
+            ImagePipeline pipeline = parseOps(source(path).pipeline(), query.getOrDefault("ops", ""));
+
+            var png = new ByteArrayOutputStream();
+            pipeline.materialize(results).savePNG(png, DEFLATE_LEVEL);
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, png.size());
+            png.writeTo(exchange.getResponseBody());
+        } catch (BadRequest ex) {
+            sendError(exchange, ex.status, ex.getMessage());
+        } catch (IOException | RuntimeException ex) {
+            // the details stay in the server's log, they can name files and classes
+            System.err.println("Failed to serve " + exchange.getRequestURI() + ": " + ex);
+            sendError(exchange, 500, "Internal server error");
+        } finally {
+            exchange.close();
+            latencies.record(System.nanoTime() - start);
+        }
+    }
+
+    private void serveStats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body = stats().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        errors.increment();
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Decodes an image under the root, or returns it from the cache if the file hasn't changed since
+     */
+    private GrayscaleImage source(String relativePath) throws BadRequest, IOException {
+        Path file;
+        BasicFileAttributes attributes;
+        try {
+            file = root.resolve(relativePath).normalize();
+            if (file.startsWith(root)) {
+                // following symbolic links must not leave the root either
+                file = file.toRealPath();
+            }
+            if (!file.startsWith(root)) {
+                throw new BadRequest(403, "Path leaves the served directory");
+            }
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            throw new BadRequest(404, "No such image: " + relativePath);
+        } catch (InvalidPathException ex) {
+            throw new BadRequest(400, ex.getMessage());
+        }
+        var key = new SourceKey(file, attributes.size(), attributes.lastModifiedTime().toMillis());
+        GrayscaleImage cached = sources.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            return sources.putIfAbsent(key, BatchCropper.decode(file));
+        } catch (IOException ex) {
+            throw new BadRequest(422, "Can't decode " + relativePath + ": " + ex.getMessage());
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        var query = new HashMap<String, String>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    /**
+     * Records the ops of a request on pipeline
+     * @throws BadRequest if an op is unknown or a crop is malformed or out of bounds
+     */
+    private static ImagePipeline parseOps(ImagePipeline pipeline, String ops) throws BadRequest {
+        for (String op : ops.split(",")) {
+            String[] parts = op.strip().split(":");
+            try {
+                pipeline = switch (parts[0]) {
+                    case "" -> pipeline;
+                    case "squarify" -> pipeline.squarified();
+                    case "normalize" -> pipeline.normalized();
+                    case "mirror" -> pipeline.mirrored();
+                    case "crop" -> {
+                        if (parts.length != 5) {
+                            throw new BadRequest(400, "crop needs startRow:startCol:width:height");
+                        }
+                        yield pipeline.cropped(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                                Integer.parseInt(parts[3]), Integer.parseInt(parts[4]));
+                    }
+                    default -> throw new BadRequest(400, "Unknown op " + parts[0]);
+                };
+            } catch (IllegalArgumentException ex) {
+                // NumberFormatException is an IllegalArgumentException too
+                throw new BadRequest(400, "Bad op " + op + ": " + ex.getMessage());
+            }
+        }
+        return pipeline;
+    }
+
+    /**
+     * @return request counts, latency percentiles and cache counters, one per line
+     */
+    public String stats() {
+        var sourceStats = sources.stats();
+        var resultStats = results.stats();
+        return "requests " + latencies.count() + " errors " + errors.sum() + "\n"
+                + "latency " + latencies.summary() + "\n"
+                + String.format("sources hits=%d misses=%d hitRate=%.3f entries=%d bytes=%d%n",
+                        sourceStats.hits(), sourceStats.misses(), sourceStats.hitRate(), sourceStats.entries(), sourceStats.bytes())
+                + String.format("results hits=%d misses=%d hitRate=%.3f entries=%d bytes=%d%n",
+                        resultStats.hits(), resultStats.misses(), resultStats.hitRate(), resultStats.entries(), resultStats.bytes());
+    }
+
+    DerivedImageCache.Stats sourceStats() {
+        return sources.stats();
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the address and port the server is listening on
+     */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops accepting requests and interrupts the ones in progress
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
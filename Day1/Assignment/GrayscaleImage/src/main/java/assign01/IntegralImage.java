@@ -0,0 +1,66 @@
+package assign01;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A summed-area table of a GrayscaleImage: entry (r, c) holds the sum of every pixel above and to
+ * the left of (r, c), so the sum of any rectangle takes four lookups
+ * Building it is one pass over the image, the row prefix sums run in parallel bands
+ * Sums of BYTE images are exact (they are integers well below 2^53), for FLOAT and DOUBLE images
+ * a region sum can differ from adding the pixels directly by floating point rounding
+ */
+final class IntegralImage {
+    private final double[] table; // (height + 1) x (width + 1), row 0 and column 0 are zero
+    private final int stride;     // width + 1
+
+    /** Largest table built, 512 MB. The table takes 8 bytes a pixel, 8 times a BYTE image */
+    static final long MAX_ENTRIES = 1L << 26;
+
+    /**
+     * @return true if a table for an image this size is small enough to keep on the heap
+     */
+    static boolean fits(int width, int height) {
+        return (long) (width + 1) * (height + 1) <= MAX_ENTRIES;
+    }
+
+    IntegralImage(GrayscaleImage image, ForkJoinPool pool) {
+        int width = image.width();
+        int height = image.height();
+        stride = width + 1;
+        table = new double[stride * (height + 1)];
+
+        // running sum along each row, independent between rows
+        RowBands.forEach(pool, width, height, (startRow, endRow) -> {
+            double[] row = new double[width];
+            for (int r = startRow; r < endRow; r++) {
+                image.readRow(r, 0, width, row);
+                int base = (r + 1) * stride;
+                double sum = 0;
+                for (int c = 0; c < width; c++) {
+                    sum += row[c];
+                    table[base + c + 1] = sum;
+                }
+            }
+        });
+        // then add each row to the one below it
+        for (int r = 2; r <= height; r++) {
+            int base = r * stride;
+            int above = base - stride;
+            for (int c = 1; c <= width; c++) {
+                table[base + c] += table[above + c];
+            }
+        }
+    }
+
+    /**
+     * Bounds are checked by the caller
+     * @return the sum of the pixels in the rectangle, in constant time
+     */
+    double sum(int startRow, int startCol, int width, int height) {
+        int top = startRow * stride;
+        int bottom = (startRow + height) * stride;
+        int left = startCol;
+        int right = startCol + width;
+        return table[bottom + right] - table[bottom + left] - table[top + right] + table[top + left];
+    }
+}
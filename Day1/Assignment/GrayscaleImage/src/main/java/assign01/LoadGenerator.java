@@ -0,0 +1,96 @@
+package assign01;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how many requests per second an ImageServer sustains
+ * A fixed number of clients, each on its own virtual thread, send the same GET request back to back
+ * for a set time (a closed loop), after a short warm-up whose requests are not counted
+ * Usage: LoadGenerator <url> [clients] [seconds]
+ * e.g. LoadGenerator "http://localhost:8080/image?path=cat.jpg&amp;ops=squarify,normalize,mirror" 32 20
+ */
+public class LoadGenerator {
+    /**
+     * @param requests successful responses during the measured time
+     * @param errors non-200 responses and failed requests during the measured time
+     * @param seconds length of the measured time
+     */
+    record Result(long requests, long errors, double seconds, LatencyHistogram latencies) {
+        double requestsPerSecond() {
+            return requests / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests (%d errors) in %.1f s, %.1f requests/s%nlatency %s",
+                    requests, errors, seconds, requestsPerSecond(), latencies.summary());
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: LoadGenerator <url> [clients] [seconds]");
+            return;
+        }
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        try {
+            System.out.println(run(URI.create(args[0]), clients, Duration.ofSeconds(seconds), Duration.ofSeconds(2)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the load and waits for it to finish
+     * @param clients number of concurrent clients
+     * @param duration how long to measure for
+     * @param warmUp how long to send requests first without counting them
+     */
+    static Result run(URI uri, int clients, Duration duration, Duration warmUp) throws InterruptedException {
+        var latencies = new LatencyHistogram();
+        var requests = new LongAdder();
+        var errors = new LongAdder();
+        var request = HttpRequest.newBuilder(uri).GET().build();
+
+        try (var client = HttpClient.newHttpClient()) {
+            long measureFrom = System.nanoTime() + warmUp.toNanos();
+            long stopAt = measureFrom + duration.toNanos();
+            var threads = new ArrayList<Thread>();
+            for (int i = 0; i < clients; i++) {
+                threads.add(Thread.ofVirtual().start(() -> {
+                    long now = System.nanoTime();
+                    while (now < stopAt && !Thread.currentThread().isInterrupted()) {
+                        boolean ok;
+                        try {
+                            var response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            ok = response.statusCode() == 200;
+                        } catch (IOException e) {
+                            ok = false;
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        long end = System.nanoTime();
+                        // only requests that both start and end inside the measured window count
+                        if (now >= measureFrom && end <= stopAt) {
+                            latencies.record(end - now);
+                            (ok ? requests : errors).increment();
+                        }
+                        now = end;
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        return new Result(requests.sum(), errors.sum(), duration.toNanos() / 1e9, latencies);
+    }
+}
@@ -0,0 +1,31 @@
+package assign01;
+
+/**
+ * The JMX view of one GrayscaleImage operation, registered as assign01:type=ImageMetrics,operation=name
+ * when the JVM runs with -Dassign01.metrics=true
+ * Times are wall-clock milliseconds per call, percentiles are within about 6%
+ */
+public interface OperationMetricsMXBean {
+    String getOperation();
+
+    long getCount();
+
+    /** Pixels produced (or read, for operations that produce no image) */
+    long getPixels();
+
+    /** Bytes of pixel buffers the operation allocated for its result */
+    long getBytesAllocated();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    /** Clears every counter of this operation */
+    void reset();
+}
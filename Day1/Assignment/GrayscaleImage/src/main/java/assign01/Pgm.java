@@ -0,0 +1,173 @@
+package assign01;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Header handling for binary PGM (P5) files, the simplest format that stores 8-bit gray pixels
+ * as they are: a short text header followed by width * height bytes, row after row
+ * Only maximum values up to 255 (one byte per pixel) are supported. readPGM scales smaller maximum values
+ * up to 255, mapPGM uses the bytes as they are and so needs a maximum value of exactly 255
+ * See https://netpbm.sourceforge.net/doc/pgm.html
+ */
+final class Pgm {
+    /** Headers longer than this (e.g. with huge comments) are rejected */
+    static final int MAX_HEADER_BYTES = 4096;
+    /** The maximum value of files that hold brightnesses as they are, the one header() writes */
+    static final int FULL_SCALE = 255;
+
+    private Pgm() {}
+
+    /**
+     * @param width
+     * @param height
+     * @param maxValue the largest pixel value the file may hold
+     * @param length the number of header bytes, so the pixels start at this file offset
+     */
+    record Header(int width, int height, int maxValue, int length) {}
+
+    /**
+     * Supplies header bytes one at a time
+     */
+    @FunctionalInterface
+    interface ByteSource {
+        /** @return the next byte as 0-255, or -1 at the end of the data */
+        int next() throws IOException;
+    }
+
+    /**
+     * @return the header written before the pixels of a width x height image with maximum value 255
+     */
+    static byte[] header(int width, int height) {
+        return ("P5\n" + width + " " + height + "\n" + FULL_SCALE + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Parses a header from bytes already in memory, such as the start of a file
+     * @param start the first bytes of the file, from position 0 to the limit
+     */
+    static Header parse(ByteBuffer start) throws IOException {
+        return parse(() -> start.hasRemaining() ? start.get() & 0xFF : -1);
+    }
+
+    /**
+     * Parses a header from a channel one byte at a time, so no pixel byte is consumed
+     */
+    static Header parse(ReadableByteChannel channel) throws IOException {
+        var one = ByteBuffer.allocate(1);
+        return parse(() -> {
+            one.clear();
+            while (one.hasRemaining()) {
+                if (channel.read(one) < 0) {
+                    return -1;
+                }
+            }
+            return one.get(0) & 0xFF;
+        });
+    }
+
+    private static Header parse(ByteSource source) throws IOException {
+        var reader = new HeaderReader(source);
+        if (reader.read() != 'P' || reader.read() != '5') {
+            throw new IOException("Not a binary PGM file, expected P5");
+        }
+        int width = reader.number();
+        int height = reader.number();
+        int maxValue = reader.number();
+        // exactly one whitespace byte separates the maximum value from the pixels
+        if (!isWhitespace(reader.read())) {
+            throw new IOException("Malformed PGM header");
+        }
+        if (width <= 0 || height <= 0) {
+            throw new IOException("PGM image is empty");
+        }
+        if (maxValue <= 0 || maxValue > FULL_SCALE) {
+            throw new IOException("Unsupported PGM maximum value " + maxValue + ", only 8-bit images are supported");
+        }
+        return new Header(width, height, maxValue, reader.count);
+    }
+
+    /**
+     * Scales samples of a file with a maximum value below 255 up to 0-255, in place
+     * Samples above the maximum value (not allowed, but seen in the wild) become 255
+     */
+    static void scaleToFullRange(byte[] samples, int maxValue) {
+        if (maxValue == FULL_SCALE) {
+            return;
+        }
+        byte[] table = new byte[256];
+        for (int v = 0; v < table.length; v++) {
+            table[v] = (byte) Math.round(Math.min(v, maxValue) * (double) FULL_SCALE / maxValue);
+        }
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = table[samples[i] & 0xFF];
+        }
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+
+    /**
+     * Reads decimal header fields, skipping whitespace and # comments before each one
+     */
+    private static final class HeaderReader {
+        private final ByteSource source;
+        private int count;         // header bytes consumed so far
+        private int pushedBack = -1; // a byte to return again from the next read, or -1
+
+        HeaderReader(ByteSource source) {
+            this.source = source;
+        }
+
+        int read() throws IOException {
+            if (count == MAX_HEADER_BYTES) {
+                throw new IOException("PGM header is longer than " + MAX_HEADER_BYTES + " bytes");
+            }
+            int c = pushedBack;
+            pushedBack = -1;
+            if (c < 0) {
+                c = source.next();
+            }
+            if (c < 0) {
+                throw new EOFException("PGM header ends early");
+            }
+            count++;
+            return c;
+        }
+
+        int number() throws IOException {
+            int c = read();
+            while (isWhitespace(c) || c == '#') {
+                if (c == '#') {
+                    while (c != '\n' && c != '\r') {
+                        c = read();
+                    }
+                }
+                c = read();
+            }
+            if (c < '0' || c > '9') {
+                throw new IOException("Malformed PGM header");
+            }
+            long value = 0;
+            // the number ends at the next whitespace, which is part of the header
+            while (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (value > Integer.MAX_VALUE) {
+                    throw new IOException("PGM header value is too large");
+                }
+                c = read();
+            }
+            if (!isWhitespace(c)) {
+                throw new IOException("Malformed PGM header");
+            }
+            // give the whitespace back, after the maximum value it is checked by parse
+            count--;
+            pushedBack = c;
+            return (int) value;
+        }
+    }
+}
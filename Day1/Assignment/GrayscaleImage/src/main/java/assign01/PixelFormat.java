@@ -0,0 +1,26 @@
+package assign01;
+
+/**
+ * The primitive type used to store each pixel of a GrayscaleImage
+ * All formats are stored in one contiguous, row-major buffer
+ * BYTE stores brightness as an unsigned 8-bit value, so values are rounded and clamped to 0-255 when written
+ * FLOAT and DOUBLE store brightness exactly as single/double precision numbers
+ */
+public enum PixelFormat {
+    BYTE(Byte.BYTES),
+    FLOAT(Float.BYTES),
+    DOUBLE(Double.BYTES);
+
+    private final int bytesPerPixel;
+
+    PixelFormat(int bytesPerPixel) {
+        this.bytesPerPixel = bytesPerPixel;
+    }
+
+    /**
+     * @return the number of bytes used to store one pixel in this format
+     */
+    public int bytesPerPixel() {
+        return bytesPerPixel;
+    }
+}
@@ -0,0 +1,210 @@
+package assign01;
+
+/**
+ * The per-row arithmetic behind GrayscaleImage, on rows already read into double[] buffers
+ * Uses the Vector API (VectorPixelKernels) when the jdk.incubator.vector module is available
+ * at runtime, and plain scalar loops otherwise
+ * Run with -Dassign01.vector=false to force the scalar loops
+ * Sums are bit-for-bit the same whichever implementation runs and on any hardware: every LANES-th
+ * value goes into its own partial sum, and the partial sums and the tail are then added in a fixed order
+ */
+final class PixelKernels {
+    /** True if the vector implementations are in use */
+    static final boolean VECTORIZED = vectorApiAvailable();
+    /** Number of partial sums in sum and sumOfSquares, fixed so that results don't depend on the vector size */
+    static final int LANES = 4;
+
+    // row and image hash mixing constants (from xxHash64)
+    private static final long HASH_SEED = 0x27D4EB2F165667C5L;
+    private static final long HASH_PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long HASH_PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private PixelKernels() {}
+
+    private static boolean vectorApiAvailable() {
+        if (!Boolean.parseBoolean(System.getProperty("assign01.vector", "true"))) {
+            return false;
+        }
+        // the module is only resolved when the JVM is started with --add-modules jdk.incubator.vector
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return VectorPixelKernels.isUseful();
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Adds with compensated (Kahan) summation in each lane, so rounding errors don't build up
+     * along long rows of non-integer pixels, the way DoubleStream.sum does
+     * @return the sum of row[0 .. count)
+     */
+    static double sum(double[] row, int count) {
+        return VECTORIZED ? VectorPixelKernels.sum(row, count) : scalarSum(row, count);
+    }
+
+    /**
+     * Multiplies row[0 .. count) by factor in place
+     */
+    static void scale(double[] row, int count, double factor) {
+        if (VECTORIZED) {
+            VectorPixelKernels.scale(row, count, factor);
+        } else {
+            scalarScale(row, count, factor);
+        }
+    }
+
+    /**
+     * Writes |a[i] - b[i]| into diff[i] for i below count, diff may be a or b
+     */
+    static void absDiff(double[] a, double[] b, double[] diff, int count) {
+        if (VECTORIZED) {
+            VectorPixelKernels.absDiff(a, b, diff, count);
+        } else {
+            scalarAbsDiff(a, b, diff, count);
+        }
+    }
+
+    /**
+     * @return the sum of row[i] * row[i] for i below count
+     */
+    static double sumOfSquares(double[] row, int count) {
+        return VECTORIZED ? VectorPixelKernels.sumOfSquares(row, count) : scalarSumOfSquares(row, count);
+    }
+
+    /**
+     * Compares with != so that 0.0 matches -0.0 and NaN matches nothing, like GrayscaleImage.equals
+     * @return the first index below count where a and b differ, or -1 if they are equal
+     */
+    static int mismatch(double[] a, double[] b, int count) {
+        return VECTORIZED ? VectorPixelKernels.mismatch(a, b, count) : scalarMismatch(a, b, count);
+    }
+
+    /**
+     * Hashes row[0 .. count) so that rows with equal values (as compared by mismatch) hash the same
+     * -0.0 is hashed as 0.0, every NaN is hashed alike
+     * @return a well mixed 64-bit hash of the row
+     */
+    static long hash(double[] row, int count) {
+        long h = HASH_SEED + count;
+        for (int i = 0; i < count; i++) {
+            long bits = Double.doubleToLongBits(row[i] + 0.0);
+            h = Long.rotateLeft(h + bits * HASH_PRIME_2, 31) * HASH_PRIME_1;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Combines per-row hashes, in row order, into the hash of a whole image
+     * @param width the row length, so that images with the same pixels in a different shape differ
+     */
+    static long combineHashes(int width, long[] rowHashes) {
+        long h = HASH_SEED + width * HASH_PRIME_1 + rowHashes.length;
+        for (long rowHash : rowHashes) {
+            h = Long.rotateLeft(h ^ rowHash, 27) * HASH_PRIME_1 + HASH_PRIME_2;
+        }
+        return mix(h);
+    }
+
+    /** Spreads every input bit over the whole result (the MurmurHash3 finalizer) */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    static double scalarSum(double[] row, int count) {
+        double[] sum = new double[LANES];
+        double[] compensation = new double[LANES];
+        double[] simple = new double[LANES];
+        int bound = count - count % LANES;
+        for (int i = 0; i < bound; i += LANES) {
+            for (int k = 0; k < LANES; k++) {
+                double y = row[i + k] - compensation[k];
+                double t = sum[k] + y;
+                compensation[k] = (t - sum[k]) - y;
+                sum[k] = t;
+                simple[k] += row[i + k];
+            }
+        }
+        for (int k = 0; k < LANES; k++) {
+            sum[k] -= compensation[k];
+        }
+        return finishSum(sum, simple, row, bound, count);
+    }
+
+    /**
+     * The end of sum, shared by both implementations: adds the lanes in order and then row[from .. count),
+     * with one more compensated sum
+     * @param lanes the compensated sum of each lane
+     * @param simpleLanes the plain sum of each lane
+     */
+    static double finishSum(double[] lanes, double[] simpleLanes, double[] row, int from, int count) {
+        double sum = 0;
+        double compensation = 0;
+        double simple = 0;
+        for (int i = 0; i < LANES + count - from; i++) {
+            double value = i < LANES ? lanes[i] : row[from + i - LANES];
+            double y = value - compensation;
+            double t = sum + y;
+            compensation = (t - sum) - y;
+            sum = t;
+            simple += i < LANES ? simpleLanes[i] : value;
+        }
+        double result = sum - compensation;
+        // an infinite pixel makes the compensation NaN, the plain sum is right then (as in DoubleStream.sum)
+        return Double.isNaN(result) ? simple : result;
+    }
+
+    static void scalarScale(double[] row, int count, double factor) {
+        for (int i = 0; i < count; i++) {
+            row[i] *= factor;
+        }
+    }
+
+    static void scalarAbsDiff(double[] a, double[] b, double[] diff, int count) {
+        for (int i = 0; i < count; i++) {
+            diff[i] = Math.abs(a[i] - b[i]);
+        }
+    }
+
+    static double scalarSumOfSquares(double[] row, int count) {
+        double[] sum = new double[LANES];
+        int bound = count - count % LANES;
+        for (int i = 0; i < bound; i += LANES) {
+            for (int k = 0; k < LANES; k++) {
+                sum[k] += row[i + k] * row[i + k];
+            }
+        }
+        return finishSumOfSquares(sum, row, bound, count);
+    }
+
+    /**
+     * The end of sumOfSquares, shared by both implementations: adds the lanes in order, then the squares
+     * of row[from .. count)
+     */
+    static double finishSumOfSquares(double[] lanes, double[] row, int from, int count) {
+        double sum = 0;
+        for (double lane : lanes) {
+            sum += lane;
+        }
+        for (int i = from; i < count; i++) {
+            sum += row[i] * row[i];
+        }
+        return sum;
+    }
+
+    static int scalarMismatch(double[] a, double[] b, int count) {
+        for (int i = 0; i < count; i++) {
+            if (a[i] != b[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
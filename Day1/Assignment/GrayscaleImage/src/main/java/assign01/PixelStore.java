@@ -0,0 +1,75 @@
+package assign01;
+
+/**
+ * A flat, row-major buffer of pixel brightnesses
+ * Pixel (row, col) of a width x height image lives at index row * width + col
+ * Indexes are longs so that stores larger than an int can address are possible
+ */
+abstract class PixelStore {
+
+    /**
+     * Allocates a zero-filled store
+     * @param format the primitive type of each pixel
+     * @param size number of pixels
+     * @return a new store of the requested format
+     * @throws IllegalArgumentException if size does not fit in a single Java array
+     */
+    static PixelStore allocate(PixelFormat format, long size) {
+        if (size < 0 || size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Image is too large for an on-heap buffer: " + size + " pixels");
+        }
+        return switch (format) {
+            case BYTE -> new BytePixelStore((int) size);
+            case FLOAT -> new FloatPixelStore((int) size);
+            case DOUBLE -> new DoublePixelStore((int) size);
+        };
+    }
+
+    /**
+     * Allocates a zero-filled store for the result of an operation on this one
+     * Heap stores allocate on the heap, stores outside the heap keep their results outside it too
+     */
+    PixelStore allocateLike(PixelFormat format, long size) {
+        return allocate(format, size);
+    }
+
+    /**
+     * @return true if the pixels are in a Java array, false if they are outside the heap
+     */
+    boolean onHeap() {
+        return true;
+    }
+
+    /**
+     * @return true if the pixels are freed when an Arena closes, rather than by the garbage collector
+     */
+    boolean arenaScoped() {
+        return false;
+    }
+
+    abstract PixelFormat format();
+
+    abstract long size();
+
+    abstract double get(long index);
+
+    abstract void set(long index, double value);
+
+    /**
+     * Copies count pixels, starting at start and step indexes apart, into dst[0 .. count)
+     * A step of 1 reads contiguous pixels, -1 reads them backwards
+     */
+    abstract void readRow(long start, long step, int count, double[] dst);
+
+    /**
+     * Copies count pixels, starting at start and step indexes apart, into dst[dstOffset .. dstOffset + count)
+     * as 8-bit samples, converting each value the same way WritableRaster.setSample does for a byte raster:
+     * truncate to an int and keep the low 8 bits
+     */
+    abstract void readRowBytes(long start, long step, int count, byte[] dst, int dstOffset);
+
+    /**
+     * Copies src[0 .. count) into count contiguous pixels starting at start
+     */
+    abstract void writeRow(long start, int count, double[] src);
+}
@@ -0,0 +1,86 @@
+package assign01;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Resizes a GrayscaleImage separably: each output row is a weighted sum of a few source rows,
+ * each of which is first resampled horizontally
+ * The weights along each axis are computed once per resize, not per pixel
+ */
+final class Resampler {
+    private Resampler() {}
+
+    /**
+     * For each output index along one axis, the first source index it reads and the weights of
+     * the consecutive source indexes from there
+     */
+    private record Axis(int[] first, double[][] weights) {
+
+        static Axis of(int sourceLength, int targetLength, ResizeMode mode) {
+            int[] first = new int[targetLength];
+            double[][] weights = new double[targetLength][];
+            double scale = (double) sourceLength / targetLength;
+            for (int i = 0; i < targetLength; i++) {
+                if (mode == ResizeMode.BILINEAR) {
+                    // sample at the output pixel's center, clamped to the outermost source centers
+                    double center = Math.min(Math.max((i + 0.5) * scale - 0.5, 0), sourceLength - 1);
+                    int left = Math.min((int) center, Math.max(sourceLength - 2, 0));
+                    double fraction = center - left;
+                    first[i] = left;
+                    weights[i] = sourceLength == 1 ? new double[]{1} : new double[]{1 - fraction, fraction};
+                } else {
+                    // fraction of each source pixel inside [i * scale, (i + 1) * scale)
+                    double start = i * scale;
+                    double end = Math.min((i + 1) * scale, sourceLength);
+                    int lo = (int) start;
+                    int hi = Math.min((int) Math.ceil(end), sourceLength);
+                    double[] w = new double[hi - lo];
+                    for (int s = lo; s < hi; s++) {
+                        w[s - lo] = (Math.min(s + 1, end) - Math.max(s, start)) / (end - start);
+                    }
+                    first[i] = lo;
+                    weights[i] = w;
+                }
+            }
+            return new Axis(first, weights);
+        }
+    }
+
+    /**
+     * Writes source resized to targetWidth x targetHeight into out, row-major starting at outOffset
+     */
+    static void resample(GrayscaleImage source, int targetWidth, int targetHeight, ResizeMode mode,
+                         ForkJoinPool pool, PixelStore out, long outOffset) {
+        int width = source.width();
+        var columns = Axis.of(width, targetWidth, mode);
+        var rows = Axis.of(source.height(), targetHeight, mode);
+
+        RowBands.forEach(pool, targetWidth, targetHeight, (startRow, endRow) -> {
+            double[] sourceRow = new double[width];
+            double[] resampledRow = new double[targetWidth];
+            double[] result = new double[targetWidth];
+            for (int y = startRow; y < endRow; y++) {
+                Arrays.fill(result, 0);
+                double[] rowWeights = rows.weights()[y];
+                for (int k = 0; k < rowWeights.length; k++) {
+                    source.readRow(rows.first()[y] + k, 0, width, sourceRow);
+                    for (int x = 0; x < targetWidth; x++) {
+                        double[] colWeights = columns.weights()[x];
+                        int first = columns.first()[x];
+                        double sum = 0;
+                        for (int j = 0; j < colWeights.length; j++) {
+                            sum += colWeights[j] * sourceRow[first + j];
+                        }
+                        resampledRow[x] = sum;
+                    }
+                    double weight = rowWeights[k];
+                    for (int x = 0; x < targetWidth; x++) {
+                        result[x] += weight * resampledRow[x];
+                    }
+                }
+                out.writeRow(outOffset + (long) y * targetWidth, targetWidth, result);
+            }
+        });
+    }
+}
@@ -0,0 +1,13 @@
+package assign01;
+
+/**
+ * How GrayscaleImage.resized computes the new pixels
+ * AREA averages every source pixel the new pixel covers, weighted by how much of it is covered,
+ * which gives smooth, alias-free thumbnails when shrinking
+ * BILINEAR interpolates between the 2x2 source pixels nearest to the new pixel's center,
+ * which is cheaper and better suited to enlarging or small changes in size
+ */
+public enum ResizeMode {
+    AREA,
+    BILINEAR
+}
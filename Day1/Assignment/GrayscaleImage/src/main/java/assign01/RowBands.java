@@ -0,0 +1,72 @@
+package assign01;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits per-row image work into bands of rows and runs them on a ForkJoinPool
+ * Band boundaries only depend on the image size, never on the pool or on timing,
+ * so any reduction that combines per-row results in row order is deterministic
+ */
+final class RowBands {
+    /** Images with fewer pixels than this are always processed on the calling thread */
+    static final long PARALLEL_THRESHOLD = 1 << 16;
+    /** Rough number of pixels in the smallest band handed to a worker */
+    private static final long MIN_BAND_PIXELS = 1 << 14;
+
+    private RowBands() {}
+
+    /**
+     * Processes rows [startRow, endRow), each call must only write to state owned by those rows
+     */
+    @FunctionalInterface
+    interface Body {
+        void run(int startRow, int endRow);
+    }
+
+    /**
+     * @return true if an image of this size should be split across pool
+     */
+    static boolean isParallel(ForkJoinPool pool, int width, int height) {
+        return pool != null && (long) width * height >= PARALLEL_THRESHOLD;
+    }
+
+    /**
+     * Runs body over rows [0, height), in parallel bands if pool is set and the image is big enough
+     * @param pool where to run the bands, or null to run on the calling thread
+     */
+    static void forEach(ForkJoinPool pool, int width, int height, Body body) {
+        if (!isParallel(pool, width, height)) {
+            body.run(0, height);
+            return;
+        }
+        int grain = (int) Math.max(1, MIN_BAND_PIXELS / width);
+        pool.invoke(new BandTask(body, 0, height, grain));
+    }
+
+    // ForkJoinTask is Serializable, but a band task is never serialized (its body is a lambda)
+    @SuppressWarnings("serial")
+    private static final class BandTask extends RecursiveAction {
+        private final Body body;
+        private final int startRow;
+        private final int endRow;
+        private final int grain;
+
+        BandTask(Body body, int startRow, int endRow, int grain) {
+            this.body = body;
+            this.startRow = startRow;
+            this.endRow = endRow;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (endRow - startRow <= grain) {
+                body.run(startRow, endRow);
+                return;
+            }
+            int mid = (startRow + endRow) >>> 1;
+            invokeAll(new BandTask(body, startRow, mid, grain), new BandTask(body, mid, endRow, grain));
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package assign01;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stores pixels in a MemorySegment outside the Java heap, such as a memory-mapped file or memory from an Arena
+ * Results of operations on a store allocated from an arena are allocated from the same arena, so they all
+ * share its lifetime, results of operations on a mapped file go to mapped temporary files
+ * Multi-byte pixels are little-endian, so raw files are portable between machines
+ * Indexes are longs all the way down, so a store can hold far more than 2^31 pixels
+ * Every access is bounds checked by the segment
+ */
+final class SegmentPixelStore extends PixelStore {
+    private static final ValueLayout.OfFloat FLOAT_LE = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfDouble DOUBLE_LE = ValueLayout.JAVA_DOUBLE_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final MemorySegment segment;
+    private final PixelFormat format;
+    private final long size;
+    private final Arena arena; // where results are allocated, or null to use temporary files
+
+    SegmentPixelStore(MemorySegment segment, PixelFormat format) {
+        this(segment, format, null);
+    }
+
+    private SegmentPixelStore(MemorySegment segment, PixelFormat format, Arena arena) {
+        this.segment = segment;
+        this.format = format;
+        this.arena = arena;
+        this.size = segment.byteSize() / format.bytesPerPixel();
+    }
+
+    /**
+     * Maps part of a file, the mapping is released once the store is garbage collected
+     * @param byteOffset where the first pixel starts in the file
+     * @param writable map read-write rather than read-only
+     * @throws IOException if the file is shorter than byteOffset + size pixels
+     */
+    static SegmentPixelStore map(Path file, PixelFormat format, long byteOffset, long size, boolean writable) throws IOException {
+        long bytes = size * format.bytesPerPixel();
+        var options = writable
+                ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ};
+        try (var channel = FileChannel.open(file, options)) {
+            if (!writable && channel.size() < byteOffset + bytes) {
+                throw new IOException(file + " is " + channel.size() + " bytes, expected at least " + (byteOffset + bytes));
+            }
+            var mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            return new SegmentPixelStore(channel.map(mode, byteOffset, bytes, Arena.ofAuto()), format);
+        }
+    }
+
+    /**
+     * Maps a new zero-filled temporary file, used for the results of operations on mapped images
+     * The file is deleted when its channel closes, the mapping stays valid until the store is collected
+     */
+    static SegmentPixelStore temporary(PixelFormat format, long size) {
+        try {
+            Path file = Files.createTempFile("grayscale", ".raw");
+            try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE)) {
+                long bytes = size * format.bytesPerPixel();
+                var segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes, Arena.ofAuto());
+                return new SegmentPixelStore(segment, format);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create a temporary image file", e);
+        }
+    }
+
+    /**
+     * Allocates a zero-filled store from arena, freed when the arena is closed
+     * @throws IllegalStateException if the arena is already closed
+     */
+    static SegmentPixelStore allocate(Arena arena, PixelFormat format, long size) {
+        var segment = arena.allocate(size * format.bytesPerPixel(), Double.BYTES);
+        return new SegmentPixelStore(segment, format, arena);
+    }
+
+    @Override
+    PixelStore allocateLike(PixelFormat format, long size) {
+        return arena != null ? allocate(arena, format, size) : temporary(format, size);
+    }
+
+    @Override
+    boolean onHeap() {
+        return false;
+    }
+
+    @Override
+    boolean arenaScoped() {
+        return arena != null;
+    }
+
+    @Override
+    PixelFormat format() {
+        return format;
+    }
+
+    @Override
+    long size() {
+        return size;
+    }
+
+    @Override
+    double get(long index) {
+        return switch (format) {
+            case BYTE -> segment.get(ValueLayout.JAVA_BYTE, index) & 0xFF;
+            case FLOAT -> segment.getAtIndex(FLOAT_LE, index);
+            case DOUBLE -> segment.getAtIndex(DOUBLE_LE, index);
+        };
+    }
+
+    @Override
+    void set(long index, double value) {
+        switch (format) {
+            case BYTE -> segment.set(ValueLayout.JAVA_BYTE, index, BytePixelStore.toByte(value));
+            case FLOAT -> segment.setAtIndex(FLOAT_LE, index, (float) value);
+            case DOUBLE -> segment.setAtIndex(DOUBLE_LE, index, value);
+        }
+    }
+
+    @Override
+    void readRow(long start, long step, int count, double[] dst) {
+        switch (format) {
+            case BYTE -> {
+                for (int i = 0; i < count; i++) {
+                    dst[i] = segment.get(ValueLayout.JAVA_BYTE, start + i * step) & 0xFF;
+                }
+            }
+            case FLOAT -> {
+                for (int i = 0; i < count; i++) {
+                    dst[i] = segment.getAtIndex(FLOAT_LE, start + i * step);
+                }
+            }
+            case DOUBLE -> {
+                if (step == 1) {
+                    MemorySegment.copy(segment, DOUBLE_LE, start * Double.BYTES, dst, 0, count);
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        dst[i] = segment.getAtIndex(DOUBLE_LE, start + i * step);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    void readRowBytes(long start, long step, int count, byte[] dst, int dstOffset) {
+        if (format == PixelFormat.BYTE && step == 1) {
+            MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, start, dst, dstOffset, count);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            long index = start + i * step;
+            dst[dstOffset + i] = format == PixelFormat.BYTE
+                    ? segment.get(ValueLayout.JAVA_BYTE, index)
+                    : (byte) (int) get(index);
+        }
+    }
+
+    @Override
+    void writeRow(long start, int count, double[] src) {
+        switch (format) {
+            case BYTE -> {
+                for (int i = 0; i < count; i++) {
+                    segment.set(ValueLayout.JAVA_BYTE, start + i, BytePixelStore.toByte(src[i]));
+                }
+            }
+            case FLOAT -> {
+                for (int i = 0; i < count; i++) {
+                    segment.setAtIndex(FLOAT_LE, start + i, (float) src[i]);
+                }
+            }
+            case DOUBLE -> MemorySegment.copy(src, 0, segment, DOUBLE_LE, start * Double.BYTES, count);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package assign01;
+
+import java.util.Arrays;
+
+/**
+ * A one dimensional filter kernel with an odd number of weights, centered on the middle one
+ * A 2D separable filter applies one kernel along rows and another along columns, which costs
+ * (2 * radius + 1) multiplications per pixel per direction instead of (2 * radius + 1)^2
+ * Kernels are applied as a correlation: output[x] = sum of weight(k) * input[x + k - radius],
+ * which is the same as convolution for the symmetric kernels built here
+ */
+public final class SeparableKernel {
+    private final double[] weights;
+    private final boolean box;
+
+    private SeparableKernel(double[] weights, boolean box) {
+        this.weights = weights;
+        this.box = box;
+    }
+
+    /**
+     * @param weights an odd number of weights, the middle one is applied to the pixel itself
+     * @throws IllegalArgumentException if there is an even number of weights
+     */
+    public static SeparableKernel of(double... weights) {
+        if (weights.length % 2 == 0) {
+            throw new IllegalArgumentException("A kernel needs an odd number of weights");
+        }
+        return new SeparableKernel(weights.clone(), false);
+    }
+
+    /**
+     * A normalized Gaussian kernel, cut off at 3 standard deviations
+     * @param sigma standard deviation in pixels
+     * @throws IllegalArgumentException if sigma is not positive
+     */
+    public static SeparableKernel gaussian(double sigma) {
+        if (!(sigma > 0)) {
+            throw new IllegalArgumentException("sigma must be positive");
+        }
+        int radius = (int) Math.ceil(3 * sigma);
+        double[] weights = new double[2 * radius + 1];
+        double total = 0;
+        for (int k = -radius; k <= radius; k++) {
+            weights[k + radius] = Math.exp(-(k * k) / (2 * sigma * sigma));
+            total += weights[k + radius];
+        }
+        for (int k = 0; k < weights.length; k++) {
+            weights[k] /= total;
+        }
+        return new SeparableKernel(weights, false);
+    }
+
+    /**
+     * A kernel that averages the 2 * radius + 1 pixels around each pixel
+     * Box kernels are filtered with running sums, so their cost does not grow with the radius
+     * @throws IllegalArgumentException if radius is negative
+     */
+    public static SeparableKernel box(int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("radius must not be negative");
+        }
+        double[] weights = new double[2 * radius + 1];
+        Arrays.fill(weights, 1.0 / weights.length);
+        return new SeparableKernel(weights, true);
+    }
+
+    /**
+     * The central difference [-1, 0, 1], the derivative half of a Sobel operator
+     */
+    public static SeparableKernel sobelDerivative() {
+        return of(-1, 0, 1);
+    }
+
+    /**
+     * The smoothing [1, 2, 1], the perpendicular half of a Sobel operator
+     */
+    public static SeparableKernel sobelSmoothing() {
+        return of(1, 2, 1);
+    }
+
+    public int radius() {
+        return weights.length / 2;
+    }
+
+    /**
+     * @return a copy of the weights
+     */
+    public double[] weights() {
+        return weights.clone();
+    }
+
+    /**
+     * Weights are read directly by Convolution, callers must not modify them
+     */
+    double[] weightsUnsafe() {
+        return weights;
+    }
+
+    boolean isBox() {
+        return box;
+    }
+}
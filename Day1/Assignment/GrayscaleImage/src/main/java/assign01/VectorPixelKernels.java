@@ -0,0 +1,110 @@
+package assign01;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API versions of the PixelKernels loops
+ * Only loaded when PixelKernels has checked that jdk.incubator.vector is present,
+ * referencing this class otherwise throws NoClassDefFoundError
+ * Each loop handles whole vectors, then finishes the remaining tail with scalar code
+ * The sums always use PixelKernels.LANES lanes, so they give the same result as the scalar loops whatever
+ * the hardware's vector size. Hardware with smaller vectors runs the scalar sums instead
+ */
+final class VectorPixelKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> SUM_SPECIES = DoubleVector.SPECIES_256;
+    /** A species wider than the hardware's is emulated and far slower than scalar code */
+    private static final boolean SUMS_VECTORIZED = SPECIES.length() >= SUM_SPECIES.length();
+
+    private VectorPixelKernels() {}
+
+    /**
+     * @return true if the hardware has more than one double lane, otherwise the scalar loops are as fast
+     */
+    static boolean isUseful() {
+        return SPECIES.length() > 1;
+    }
+
+    /**
+     * Lane for lane the same compensated sum as PixelKernels.scalarSum, and the same finish
+     */
+    static double sum(double[] row, int count) {
+        if (!SUMS_VECTORIZED) {
+            return PixelKernels.scalarSum(row, count);
+        }
+        var sum = DoubleVector.zero(SUM_SPECIES);
+        var compensation = DoubleVector.zero(SUM_SPECIES);
+        var simple = DoubleVector.zero(SUM_SPECIES);
+        int bound = SUM_SPECIES.loopBound(count);
+        for (int i = 0; i < bound; i += SUM_SPECIES.length()) {
+            var v = DoubleVector.fromArray(SUM_SPECIES, row, i);
+            var y = v.sub(compensation);
+            var t = sum.add(y);
+            compensation = t.sub(sum).sub(y);
+            sum = t;
+            simple = simple.add(v);
+        }
+        return PixelKernels.finishSum(sum.sub(compensation).toArray(), simple.toArray(), row, bound, count);
+    }
+
+    static void scale(double[] row, int count, double factor) {
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, row, i).mul(factor).intoArray(row, i);
+        }
+        for (; i < count; i++) {
+            row[i] *= factor;
+        }
+    }
+
+    static void absDiff(double[] a, double[] b, double[] diff, int count) {
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            var va = DoubleVector.fromArray(SPECIES, a, i);
+            va.sub(DoubleVector.fromArray(SPECIES, b, i)).abs().intoArray(diff, i);
+        }
+        for (; i < count; i++) {
+            diff[i] = Math.abs(a[i] - b[i]);
+        }
+    }
+
+    /**
+     * Lane for lane the same as PixelKernels.scalarSumOfSquares: a multiply then an add, not a fused
+     * multiply-add, which rounds once and so gives different results
+     */
+    static double sumOfSquares(double[] row, int count) {
+        if (!SUMS_VECTORIZED) {
+            return PixelKernels.scalarSumOfSquares(row, count);
+        }
+        var acc = DoubleVector.zero(SUM_SPECIES);
+        int bound = SUM_SPECIES.loopBound(count);
+        for (int i = 0; i < bound; i += SUM_SPECIES.length()) {
+            var v = DoubleVector.fromArray(SUM_SPECIES, row, i);
+            acc = acc.add(v.mul(v));
+        }
+        return PixelKernels.finishSumOfSquares(acc.toArray(), row, bound, count);
+    }
+
+    static int mismatch(double[] a, double[] b, int count) {
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            var va = DoubleVector.fromArray(SPECIES, a, i);
+            var vb = DoubleVector.fromArray(SPECIES, b, i);
+            var ne = va.compare(VectorOperators.NE, vb);
+            if (ne.anyTrue()) {
+                return i + ne.firstTrue();
+            }
+        }
+        for (; i < count; i++) {
+            if (a[i] != b[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,83 @@
+package assign01;
+
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchCropperTest {
+
+    @Test
+    void listInputsFromDirectoryGlobAndManifest(@TempDir Path dir) throws IOException {
+        Files.createDirectories(dir.resolve("in/nested"));
+        Files.writeString(dir.resolve("in/a.png"), "");
+        Files.writeString(dir.resolve("in/b.jpg"), "");
+        Files.writeString(dir.resolve("in/nested/c.png"), "");
+        Files.writeString(dir.resolve("list.txt"), "in/b.jpg\n\n# skipped\nin/a.png\n");
+
+        assertEquals(List.of(dir.resolve("in/a.png"), dir.resolve("in/b.jpg")),
+                BatchCropper.listInputs(dir.resolve("in").toString()));
+        assertEquals(List.of(dir.resolve("in/a.png"), dir.resolve("in/nested/c.png")),
+                BatchCropper.listInputs(dir.resolve("in") + "/**.png"));
+        assertEquals(List.of(dir.resolve("in/b.jpg"), dir.resolve("in/a.png")),
+                BatchCropper.listInputs(dir.resolve("list.txt").toString()));
+    }
+
+    @Test
+    void smallPGMFilesAreReadOntoTheHeap(@TempDir Path dir) throws IOException {
+        var image = new GrayscaleImage(new double[][]{{10, 20, 30}, {40, 50, 60}});
+        var file = dir.resolve("small.pgm");
+        image.savePGM(file);
+        var decoded = BatchCropper.decode(file);
+        assertEquals(image, decoded);
+        // mapped images don't get a summed-area table, heap ones do
+        assertTrue(decoded.usesRegionTable());
+        assertFalse(GrayscaleImage.mapPGM(file).usesRegionTable());
+    }
+
+    @Test
+    void runCropsEveryImage(@TempDir Path dir) throws IOException {
+        var image = new GrayscaleImage(new double[][]{{10, 20, 30}, {40, 50, 60}});
+        image.savePNG(dir.resolve("first.png").toFile());
+        image.mirrored().savePGM(dir.resolve("second.pgm"));
+        var out = dir.resolve("out");
+        Files.createDirectories(out);
+
+        new BatchCropper(out).run(List.of(dir.resolve("first.png"), dir.resolve("second.pgm")));
+
+        var expectedFile = dir.resolve("expected.png").toFile();
+        image.squarified().normalized().mirrored().savePNG(expectedFile);
+        assertEquals(new GrayscaleImage(expectedFile), new GrayscaleImage(out.resolve("first.png")));
+        image.mirrored().squarified().normalized().mirrored().savePNG(expectedFile);
+        assertEquals(new GrayscaleImage(expectedFile), new GrayscaleImage(out.resolve("second.png")));
+    }
+
+    @Test
+    void sameNamedInputsGetTheirOwnOutputs(@TempDir Path dir) throws IOException {
+        Path a = Path.of("a/x.png"), b = Path.of("b/x.png"), jpg = Path.of("a/x.jpg"), upper = Path.of("c/X.png"),
+                numbered = Path.of("c/x-2.png");
+        assertEquals(Map.of(a, "x.png", b, "x-2.png", jpg, "x-3.png", upper, "X-4.png", numbered, "x-2-2.png"),
+                BatchCropper.outputNames(List.of(a, b, jpg, upper, numbered, a)));
+
+        var image = new GrayscaleImage(new double[][]{{10, 20, 30}, {40, 50, 60}});
+        Files.createDirectories(dir.resolve("a"));
+        Files.createDirectories(dir.resolve("b"));
+        image.savePNG(dir.resolve("a/x.png").toFile());
+        image.mirrored().savePNG(dir.resolve("b/x.png").toFile());
+        var out = Files.createDirectories(dir.resolve("out"));
+        new BatchCropper(out).run(List.of(dir.resolve("a/x.png"), dir.resolve("b/x.png")));
+
+        var expectedFile = dir.resolve("expected.png").toFile();
+        image.squarified().normalized().mirrored().savePNG(expectedFile);
+        assertEquals(new GrayscaleImage(expectedFile), new GrayscaleImage(out.resolve("x.png")));
+        image.mirrored().squarified().normalized().mirrored().savePNG(expectedFile);
+        assertEquals(new GrayscaleImage(expectedFile), new GrayscaleImage(out.resolve("x-2.png")));
+    }
+}
@@ -0,0 +1,113 @@
+package assign01;
+
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConvolutionTest {
+
+    private GrayscaleImage image;
+
+    @BeforeEach
+    void setUp() {
+        // larger than one tile in both directions, with a width that isn't a multiple of the tile width
+        var data = new double[150][300];
+        for (int row = 0; row < data.length; row++) {
+            for (int col = 0; col < data[row].length; col++) {
+                data[row][col] = (row * 13 + col * 7 + row * col) % 256;
+            }
+        }
+        image = new GrayscaleImage(data, PixelFormat.BYTE);
+    }
+
+    /**
+     * Direct 2D correlation, one pixel at a time
+     */
+    private static double naive(GrayscaleImage source, double[] h, double[] v, EdgeMode edges, int row, int col) {
+        double sum = 0;
+        for (int i = 0; i < v.length; i++) {
+            int r = edges.resolve(row + i - v.length / 2, source.height());
+            for (int j = 0; j < h.length; j++) {
+                int c = edges.resolve(col + j - h.length / 2, source.width());
+                if (r >= 0 && c >= 0) {
+                    sum += v[i] * h[j] * source.getPixel(c, r);
+                }
+            }
+        }
+        return sum;
+    }
+
+    private static void assertMatchesNaive(GrayscaleImage source, GrayscaleImage result,
+                                           SeparableKernel h, SeparableKernel v, EdgeMode edges) {
+        for (int row = 0; row < source.height(); row += 7) {
+            for (int col = 0; col < source.width(); col += 11) {
+                assertEquals(naive(source, h.weights(), v.weights(), edges, row, col), result.getPixel(col, row), 1e-3,
+                        "pixel at row: " + row + " col: " + col + " incorrect with " + edges);
+            }
+        }
+    }
+
+    @Test
+    void tiledMatchesNaiveForEveryEdgeMode() {
+        var h = SeparableKernel.of(1, -2, 3, 0.5, 2);
+        var v = SeparableKernel.gaussian(1.2);
+        for (var edges : EdgeMode.values()) {
+            var result = image.convolved(h, v, edges);
+            assertEquals(PixelFormat.FLOAT, result.format());
+            assertMatchesNaive(image, result, h, v, edges);
+        }
+    }
+
+    @Test
+    void boxRunningSumMatchesNaive() {
+        for (var edges : EdgeMode.values()) {
+            for (int radius : new int[]{0, 3, 200}) {
+                var box = SeparableKernel.box(radius);
+                assertMatchesNaive(image, image.convolved(box, box, edges), box, box, edges);
+            }
+        }
+    }
+
+    @Test
+    void parallelMatchesSequential() {
+        var pool = new ForkJoinPool(4);
+        try {
+            assertEquals(image.gaussianBlurred(2), image.parallel(pool).gaussianBlurred(2));
+            assertEquals(image.boxBlurred(5), image.parallel(pool).boxBlurred(5));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void blurKeepsFlatImagesFlat() {
+        var flat = new GrayscaleImage(new double[20][30]);
+        var gray = new GrayscaleImage(new double[][]{{100, 100, 100}, {100, 100, 100}});
+        assertEquals(100, gray.gaussianBlurred(3).getPixel(1, 1), 1e-9);
+        assertEquals(100, gray.boxBlurred(10).getPixel(2, 0), 1e-9);
+        assertEquals(0, gray.sobelEdges().getPixel(1, 1), 1e-9);
+        assertEquals(0, flat.sobelEdges().averageBrightness());
+    }
+
+    @Test
+    void sobelFindsVerticalEdge() {
+        var step = new GrayscaleImage(new double[][]{{0, 0, 10, 10}, {0, 0, 10, 10}, {0, 0, 10, 10}});
+        var edges = step.sobelEdges();
+        assertEquals(0, edges.getPixel(0, 1), 1e-9);
+        assertEquals(40, edges.getPixel(1, 1), 1e-9);
+        assertEquals(40, edges.getPixel(2, 1), 1e-9);
+        assertEquals(0, edges.getPixel(3, 1), 1e-9);
+    }
+
+    @Test
+    void kernelValidation() {
+        assertThrows(IllegalArgumentException.class, () -> SeparableKernel.of(1, 1));
+        assertThrows(IllegalArgumentException.class, () -> SeparableKernel.gaussian(0));
+        assertThrows(IllegalArgumentException.class, () -> SeparableKernel.box(-1));
+        assertEquals(6, SeparableKernel.gaussian(2).radius());
+    }
+}
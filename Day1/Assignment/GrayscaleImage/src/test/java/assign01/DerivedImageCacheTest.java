@@ -0,0 +1,97 @@
+package assign01;
+
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DerivedImageCacheTest {
+
+    private GrayscaleImage wide;
+
+    @BeforeEach
+    void setUp() {
+        wide = new GrayscaleImage(new double[][]{{1,2,3,4},{5,6,7,8},{9,10,11,12}});
+    }
+
+    @Test
+    void repeatedChainIsAHit() {
+        var cache = new DerivedImageCache(1 << 20);
+        var first = wide.pipeline().squarified().normalized().mirrored().materialize(cache);
+        assertEquals(wide.squarified().normalized().mirrored(), first);
+
+        // an equal source built separately still hits
+        var again = new GrayscaleImage(new double[][]{{1,2,3,4},{5,6,7,8},{9,10,11,12}});
+        assertSame(first, again.pipeline().squarified().normalized().mirrored().materialize(cache));
+
+        var stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.entries());
+        assertEquals(9 * 8, stats.bytes());
+        assertEquals(0.5, stats.hitRate());
+    }
+
+    @Test
+    void keyIncludesOpsParametersAndFormat() {
+        var cache = new DerivedImageCache(1 << 20);
+        var scaled2 = wide.pipeline().scaled(2).materialize(cache);
+        var scaled3 = wide.pipeline().scaled(3).materialize(cache);
+        assertNotEquals(scaled2, scaled3);
+        assertNotSame(wide.pipeline().mirrored().materialize(cache), wide.pipeline().materialize(cache));
+
+        var bytes = wide.converted(PixelFormat.BYTE);
+        var fromBytes = bytes.pipeline().scaled(2).materialize(cache);
+        assertEquals(PixelFormat.FLOAT, fromBytes.format());
+        assertEquals(0, cache.stats().hits());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        // room for two 3x3 double images
+        var cache = new DerivedImageCache(2 * 9 * 8);
+        var a = wide.pipeline().cropped(0, 0, 3, 3).materialize(cache);
+        var b = wide.pipeline().cropped(0, 1, 3, 3).materialize(cache);
+        assertSame(a, wide.pipeline().cropped(0, 0, 3, 3).materialize(cache));
+        wide.pipeline().cropped(0, 0, 3, 3).mirrored().materialize(cache);
+
+        assertEquals(1, cache.stats().evictions());
+        assertEquals(2, cache.stats().entries());
+        assertSame(a, wide.pipeline().cropped(0, 0, 3, 3).materialize(cache));
+        assertNotSame(b, wide.pipeline().cropped(0, 1, 3, 3).materialize(cache));
+    }
+
+    @Test
+    void arenaResultsOutliveTheArenaInTheCache() {
+        var cache = new DerivedImageCache(1 << 20);
+        var expected = wide.squarified().normalized();
+        GrayscaleImage fromArena;
+        try (var arena = Arena.ofConfined()) {
+            fromArena = wide.offHeap(arena).pipeline().squarified().normalized().materialize(cache);
+            assertEquals(expected, fromArena);
+        }
+        assertThrows(IllegalStateException.class, () -> fromArena.getPixel(0, 0));
+
+        // a hit after the arena closed, and from another thread than the confined arena's
+        GrayscaleImage[] hit = new GrayscaleImage[1];
+        var thread = new Thread(() -> hit[0] = wide.pipeline().squarified().normalized().materialize(cache));
+        thread.start();
+        assertDoesNotThrow(() -> thread.join());
+        assertEquals(1, cache.stats().hits());
+        assertEquals(expected, hit[0]);
+        assertEquals(expected.getPixel(2, 2), hit[0].getPixel(2, 2));
+    }
+
+    @Test
+    void oversizedResultsAreNotKept() {
+        var cache = new DerivedImageCache(8);
+        var result = wide.pipeline().normalized().materialize(cache);
+        assertEquals(wide.normalized(), result);
+        assertEquals(0, cache.stats().entries());
+        assertEquals(0, cache.stats().bytes());
+        assertThrows(IllegalArgumentException.class, () -> new DerivedImageCache(-1));
+    }
+}
@@ -0,0 +1,87 @@
+package assign01;
+
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GrayscaleImageBufferTest {
+
+    private GrayscaleImage wide;
+
+    @BeforeEach
+    void setUp() {
+        wide = new GrayscaleImage(new double[][]{{1,2,3,4},{5,6,7,8},{9,10,11,12}});
+    }
+
+    @Test
+    void cropperChainInPlaceMatchesImmutableChain() {
+        var buffer = GrayscaleImageBuffer.of(wide);
+        buffer.squarify();
+        buffer.normalize();
+        buffer.mirror();
+        assertEquals(wide.squarified().normalized().mirrored(), buffer.toImage());
+        assertEquals(3, buffer.width());
+        assertEquals(3, buffer.height());
+        assertEquals(12, buffer.capacity());
+
+        // a 5x3 and a 2x5 image, where a centered square would differ from the top left one
+        var wider = new GrayscaleImage(new double[][]{{1,2,3,4,5},{6,7,8,9,10},{11,12,13,14,15}});
+        for (var image : new GrayscaleImage[]{wider, wider.transposed().cropped(0, 0, 2, 5)}) {
+            var squared = GrayscaleImageBuffer.of(image);
+            squared.squarify();
+            assertEquals(image.squarified(), squared.toImage());
+            assertEquals(image.pipeline().squarified().materialize(), squared.toImage());
+        }
+    }
+
+    @Test
+    void frameLoopReusesBuffers() {
+        var frame = new GrayscaleImageBuffer(4, 3, PixelFormat.DOUBLE);
+        var output = new GrayscaleImageBuffer(2, 2, PixelFormat.DOUBLE);
+        for (int i = 0; i < 3; i++) {
+            var image = i % 2 == 0 ? wide : wide.mirrored();
+            frame.copyFrom(image);
+            frame.cropInto(output, 1, 1, 2, 2);
+            output.mirror();
+            assertEquals(image.cropped(1, 1, 2, 2).mirrored(), output.toImage());
+        }
+        // the source is untouched by cropping into another buffer
+        assertEquals(wide, frame.toImage());
+    }
+
+    @Test
+    void toImageIsASnapshot() {
+        var buffer = GrayscaleImageBuffer.of(wide);
+        var snapshot = buffer.toImage();
+        buffer.setPixel(0, 0, 100);
+        buffer.mirror();
+        assertEquals(wide, snapshot);
+        assertEquals(100, buffer.getPixel(3, 0));
+    }
+
+    @Test
+    void byteBufferRoundsInPlace() {
+        var buffer = GrayscaleImageBuffer.of(wide.converted(PixelFormat.BYTE));
+        buffer.normalize();
+        assertEquals(PixelFormat.BYTE, buffer.toImage().format());
+        // 127 / 6.5 * 1 = 19.54 rounds to 20
+        assertEquals(20, buffer.getPixel(0, 0));
+        assertEquals(wide.normalized().converted(PixelFormat.BYTE), buffer.toImage());
+    }
+
+    @Test
+    void outOfBoundsThrows() {
+        var buffer = GrayscaleImageBuffer.of(wide);
+        var small = new GrayscaleImageBuffer(2, 2, PixelFormat.FLOAT);
+        assertThrows(IllegalArgumentException.class, () -> buffer.cropInto(small, 0, 0, 3, 2));
+        assertThrows(IllegalArgumentException.class, () -> buffer.cropInto(small, 2, 0, 2, 2));
+        var overflow = assertThrows(IllegalArgumentException.class,
+                () -> buffer.cropInto(small, 1, 1, 1, Integer.MAX_VALUE));
+        assertEquals("Cropped row and column out of bounds", overflow.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> small.copyFrom(wide));
+        assertThrows(IllegalArgumentException.class, () -> buffer.getPixel(4, 0));
+        assertThrows(IllegalArgumentException.class, () -> new GrayscaleImageBuffer(0, 1, PixelFormat.BYTE));
+    }
+}
@@ -3,6 +3,17 @@ package assign01;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -45,6 +56,48 @@ class GrayscaleImageTest {
         assertEquals(smallWide, equivalentSmallWide);
     }
 
+    @Test
+    void contentHash() {
+        var equivalent = new GrayscaleImage(new double[][]{{1,2},{3,4}}, PixelFormat.BYTE);
+        assertEquals(smallSquare.contentHash(), equivalent.contentHash());
+        assertEquals(smallSquare.hashCode(), equivalent.hashCode());
+        assertEquals(smallSquare.mirrored().mirrored().contentHash(), smallSquare.contentHash());
+        assertEquals(new GrayscaleImage(new double[][]{{0.0}}).contentHash(),
+                new GrayscaleImage(new double[][]{{-0.0}}).contentHash());
+        // same pixels in a different shape
+        assertNotEquals(new GrayscaleImage(new double[][]{{1,2,3,4}}).contentHash(),
+                new GrayscaleImage(new double[][]{{1,2},{3,4}}).contentHash());
+        assertNotEquals(smallSquare.contentHash(), smallSquare.mirrored().contentHash());
+
+        var set = new HashSet<GrayscaleImage>();
+        assertTrue(set.add(smallSquare));
+        assertFalse(set.add(equivalent));
+        assertTrue(set.add(smallSquare.mirrored()));
+        assertNotEquals(smallSquare, smallSquare.mirrored());
+    }
+
+    @Test
+    void parallelContentHashMatchesSequential() {
+        var data = new double[300][400];
+        for (int row = 0; row < data.length; row++) {
+            for (int col = 0; col < data[row].length; col++) {
+                data[row][col] = (row * 31 + col * 17) % 256;
+            }
+        }
+        var image = new GrayscaleImage(data, PixelFormat.FLOAT);
+        var pool = new ForkJoinPool(4);
+        try {
+            var parallel = new GrayscaleImage(data).parallel(pool);
+            assertEquals(image.contentHash(), parallel.contentHash());
+            assertEquals(image, parallel);
+        } finally {
+            pool.shutdown();
+        }
+        data[299][399] = 1;
+        assertNotEquals(image, new GrayscaleImage(data).parallel());
+        assertNotEquals(image.contentHash(), new GrayscaleImage(data).contentHash());
+    }
+
     @Test
     void averageBrightness() {
         assertEquals(smallSquare.averageBrightness(), 2.5, 2.5*.001);
@@ -90,4 +143,318 @@ class GrayscaleImageTest {
     void testGetPixelThrowsOnNegativeX(){
         assertThrows(IllegalArgumentException.class, () -> { smallSquare.getPixel(-1,0);});
     }
-}
\ No newline at end of file
+
+    @Test
+    void byteFormatRoundsAndClamps(){
+        var bytes = new GrayscaleImage(new double[][]{{-5, 1.4},{1.6, 300}}, PixelFormat.BYTE);
+        assertEquals(PixelFormat.BYTE, bytes.format());
+        assertEquals(new GrayscaleImage(new double[][]{{0, 1},{2, 255}}), bytes);
+    }
+
+    @Test
+    void normalizedPromotesByteToFloat(){
+        var bytes = smallSquare.converted(PixelFormat.BYTE);
+        var norm = bytes.normalized();
+        assertEquals(PixelFormat.FLOAT, norm.format());
+        assertEquals(127, norm.averageBrightness(), 127*.001);
+    }
+
+    @Test
+    void getDataReturnsCopy(){
+        var data = smallSquare.getData();
+        data[0][0] = 100;
+        assertEquals(1, smallSquare.getPixel(0, 0));
+    }
+
+    @Test
+    void viewsComposeWithoutChangingOriginal(){
+        var big = new GrayscaleImage(new double[][]{{1,2,3,4},{5,6,7,8},{9,10,11,12}});
+        var view = big.mirrored().cropped(1, 1, 2, 2).mirrored();
+        assertEquals(new GrayscaleImage(new double[][]{{6,7},{10,11}}), view);
+        assertEquals(new GrayscaleImage(new double[][]{{7,6},{11,10}}), view.mirrored());
+        assertEquals(view, view.compacted());
+        assertEquals(1, big.getPixel(0, 0));
+    }
+
+    @Test
+    void croppedThrowsOnNegativeStart(){
+        assertThrows(IllegalArgumentException.class, () -> smallSquare.cropped(-1, 0, 1, 1));
+    }
+
+    @Test
+    void croppedThrowsOnOverflowingSize(){
+        assertThrows(IllegalArgumentException.class, () -> smallSquare.cropped(2, 0, 1, Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> smallSquare.averageBrightness(0, 2, Integer.MAX_VALUE, 1));
+    }
+
+    @Test
+    void parallelMatchesSequential(){
+        var data = new double[700][500];
+        for (int row = 0; row < data.length; row++) {
+            for (int col = 0; col < data[row].length; col++) {
+                data[row][col] = (row * 31 + col * 17) % 256 + 0.1;
+            }
+        }
+        var sequential = new GrayscaleImage(data);
+        var pool = new ForkJoinPool(4);
+        try {
+            var parallel = sequential.parallel(pool);
+            assertTrue(parallel.isParallel());
+            assertEquals(sequential.averageBrightness(), parallel.averageBrightness());
+            var normalized = parallel.normalized();
+            assertTrue(normalized.isParallel());
+            assertEquals(sequential.normalized(), normalized);
+
+            data[699][499] += 1;
+            assertNotEquals(parallel, new GrayscaleImage(data));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void savePNGRoundTrip(@TempDir Path dir) throws IOException {
+        var file = dir.resolve("out.png").toFile();
+        new GrayscaleImage(new double[][]{{0, 127.6, 3},{255, 300, 9}}).mirrored().savePNG(file);
+        // savePNG truncates like WritableRaster.setSample, so 300 wraps around to 44
+        var expected = new GrayscaleImage(new double[][]{{3, 127, 0},{9, 44, 255}});
+
+        var fromFile = new GrayscaleImage(file);
+        assertEquals(PixelFormat.BYTE, fromFile.format());
+        assertEquals(expected, fromFile);
+        assertEquals(expected, new GrayscaleImage(file.toPath()));
+        assertEquals(expected, new GrayscaleImage(file.toURI().toURL()));
+        try (var in = Files.newInputStream(file.toPath())) {
+            assertEquals(expected, new GrayscaleImage(in));
+        }
+    }
+
+    @Test
+    void unreadableImageThrows(@TempDir Path dir) throws IOException {
+        var file = dir.resolve("notAnImage.png");
+        Files.writeString(file, "hello");
+        assertThrows(IOException.class, () -> new GrayscaleImage(file));
+    }
+
+    @Test
+    void mappedRawRoundTrip(@TempDir Path dir) throws IOException {
+        for (var format : PixelFormat.values()) {
+            var file = dir.resolve(format + ".raw");
+            var image = smallWide.converted(format);
+            image.mirrored().saveRaw(file);
+            assertEquals(6L * format.bytesPerPixel(), Files.size(file));
+
+            var mapped = GrayscaleImage.mapRaw(file, 3, 2, format);
+            assertEquals(format, mapped.format());
+            assertEquals(image.mirrored(), mapped);
+            assertEquals(image.averageBrightness(), mapped.averageBrightness());
+            assertEquals(image.mirrored().compacted().normalized(), mapped.normalized());
+            assertEquals(image.cropped(0, 1, 2, 2), mapped.mirrored().cropped(0, 1, 2, 2));
+            assertEquals(image.cropped(0, 1, 2, 2).mirrored(), mapped.cropped(0, 0, 2, 2));
+        }
+    }
+
+    @Test
+    void pgmRoundTrip(@TempDir Path dir) throws IOException {
+        var file = dir.resolve("out.pgm");
+        var image = new GrayscaleImage(new double[][]{{0, 127.6, 3},{255, 300, 9}});
+        image.mirrored().savePGM(file);
+        assertEquals("P5\n3 2\n255\n".length() + 6, Files.size(file));
+
+        // converted to 8 bits like savePNG
+        var expected = new GrayscaleImage(new double[][]{{3, 127, 0},{9, 44, 255}});
+        var mapped = GrayscaleImage.mapPGM(file);
+        assertEquals(PixelFormat.BYTE, mapped.format());
+        assertEquals(expected, mapped);
+        try (var channel = Files.newByteChannel(file)) {
+            assertEquals(expected, GrayscaleImage.readPGM(channel));
+        }
+    }
+
+    @Test
+    void readPGMLeavesTheRestOfTheChannel() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var channel = Channels.newChannel(bytes);
+        smallSquare.savePGM(channel);
+        smallWide.savePGM(channel);
+
+        var input = Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(smallSquare, GrayscaleImage.readPGM(input));
+        assertEquals(smallWide, GrayscaleImage.readPGM(input));
+        assertThrows(IOException.class, () -> GrayscaleImage.readPGM(input));
+    }
+
+    @Test
+    void readPGMScalesSmallerMaximumValues(@TempDir Path dir) throws IOException {
+        // a 4-bit file: 15 is full brightness, 20 is out of range and clamped
+        var file = dir.resolve("nibbles.pgm");
+        Files.write(file, new byte[]{'P', '5', '\n', '4', ' ', '1', '\n', '1', '5', '\n', 0, 7, 15, 20});
+        try (var channel = Files.newByteChannel(file)) {
+            assertEquals(new GrayscaleImage(new double[][]{{0, 119, 255, 255}}), GrayscaleImage.readPGM(channel));
+        }
+        assertThrows(IOException.class, () -> GrayscaleImage.mapPGM(file));
+        assertEquals(new GrayscaleImage(new double[][]{{0, 119, 255, 255}}), BatchCropper.decode(file));
+    }
+
+    @Test
+    void pngDeflateLevels() throws IOException {
+        var data = new double[64][64];
+        for (int row = 0; row < data.length; row++) {
+            for (int col = 0; col < data[row].length; col++) {
+                data[row][col] = (row / 8) * 16;
+            }
+        }
+        var image = new GrayscaleImage(data);
+        var stored = new ByteArrayOutputStream();
+        image.savePNG(stored, 0);
+        var smallest = new ByteArrayOutputStream();
+        image.savePNG(Channels.newChannel(smallest), 9);
+
+        assertTrue(smallest.size() < stored.size());
+        assertEquals(image, new GrayscaleImage(new ByteArrayInputStream(stored.toByteArray())));
+        assertEquals(image, new GrayscaleImage(new ByteArrayInputStream(smallest.toByteArray())));
+        assertThrows(IllegalArgumentException.class, () -> image.savePNG(stored, 10));
+    }
+
+    @Test
+    void offHeapImagesWorkWithEveryOperation() {
+        try (var arena = Arena.ofConfined()) {
+            for (var format : PixelFormat.values()) {
+                var image = smallWide.converted(format);
+                var offHeap = image.offHeap(arena);
+                assertEquals(format, offHeap.format());
+                assertEquals(image, offHeap);
+                assertEquals(image.squarified().normalized().mirrored(), offHeap.squarified().normalized().mirrored());
+                assertEquals(image.rotated90().compacted(), offHeap.rotated90().compacted());
+                assertEquals(image.gaussianBlurred(1), offHeap.gaussianBlurred(1));
+                assertEquals(image.resized(2, 1), offHeap.resized(2, 1));
+                assertEquals(image.histogram().max(), offHeap.histogram().max());
+            }
+        }
+    }
+
+    @Test
+    void closedArenaInvalidatesImages() {
+        GrayscaleImage offHeap;
+        GrayscaleImage derived;
+        try (var arena = Arena.ofShared()) {
+            offHeap = smallSquare.offHeap(arena);
+            derived = offHeap.mirrored().normalized();
+            assertEquals(smallSquare.mirrored().normalized(), derived);
+        }
+        assertThrows(IllegalStateException.class, () -> offHeap.getPixel(0, 0));
+        assertThrows(IllegalStateException.class, () -> derived.getPixel(0, 0));
+
+        var closed = Arena.ofConfined();
+        closed.close();
+        assertThrows(IllegalStateException.class, () -> smallSquare.offHeap(closed));
+    }
+
+    @Test
+    void parallelOffHeapNeedsASharedArena() {
+        var pool = new ForkJoinPool(4);
+        try (var arena = Arena.ofShared()) {
+            var image = new GrayscaleImage(new double[300][400], PixelFormat.BYTE).parallel(pool);
+            var offHeap = image.offHeap(arena);
+            assertTrue(offHeap.isParallel());
+            assertEquals(image.mirrored().normalized(), offHeap.mirrored().normalized());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void mapRawThrowsOnShortFile(@TempDir Path dir) throws IOException {
+        var file = dir.resolve("short.raw");
+        smallSquare.converted(PixelFormat.BYTE).saveRaw(file);
+        assertThrows(IOException.class, () -> GrayscaleImage.mapRaw(file, 3, 2, PixelFormat.BYTE));
+    }
+
+    @Test
+    void regionAverageMatchesCropped(){
+        var image = new GrayscaleImage(new double[][]{{1,2,3,4},{5,6,7,8},{9,10,11,12}}, PixelFormat.BYTE);
+        for (var source : new GrayscaleImage[]{image, image.mirrored(), image.converted(PixelFormat.DOUBLE)}) {
+            for (int row = 0; row < 3; row++) {
+                for (int col = 0; col < 4; col++) {
+                    int width = 4 - col;
+                    int height = 3 - row;
+                    assertEquals(source.cropped(row, col, width, height).averageBrightness(),
+                            source.averageBrightness(row, col, width, height), 1e-9);
+                }
+            }
+        }
+        assertEquals(78, image.regionSum(0, 0, 4, 3));
+        assertEquals(6.5, image.averageBrightness());
+        assertEquals(6.5, image.averageBrightness());
+        assertThrows(IllegalArgumentException.class, () -> image.averageBrightness(1, 1, 4, 1));
+    }
+
+    @Test
+    void mappedImagesSumRegionsWithoutATable(@TempDir Path dir) throws IOException {
+        var image = new GrayscaleImage(new double[][]{{1,2,3,4},{5,6,7,8},{9,10,11,12}}, PixelFormat.BYTE);
+        var file = dir.resolve("region.raw");
+        image.saveRaw(file);
+        var mapped = GrayscaleImage.mapRaw(file, 4, 3, PixelFormat.BYTE);
+        assertTrue(image.usesRegionTable());
+        assertFalse(mapped.usesRegionTable());
+        assertEquals(78, mapped.regionSum(0, 0, 4, 3));
+        assertEquals(image.regionSum(1, 1, 3, 2), mapped.regionSum(1, 1, 3, 2));
+        assertEquals(image.averageBrightness(1, 2, 1, 1), mapped.mirrored().averageBrightness(1, 1, 1, 1));
+        assertFalse(mapped.usesRegionTable());
+    }
+
+    @Test
+    void rotationsAndFlips(){
+        assertEquals(new GrayscaleImage(new double[][]{{4,5,6},{1,2,3}}), smallWide.flippedVertically());
+        assertEquals(new GrayscaleImage(new double[][]{{1,4},{2,5},{3,6}}), smallWide.transposed());
+        assertEquals(new GrayscaleImage(new double[][]{{4,1},{5,2},{6,3}}), smallWide.rotated90());
+        assertEquals(new GrayscaleImage(new double[][]{{6,5,4},{3,2,1}}), smallWide.rotated180());
+        assertEquals(new GrayscaleImage(new double[][]{{3,6},{2,5},{1,4}}), smallWide.rotated270());
+        assertEquals(smallWide, smallWide.rotated90().rotated90().rotated90().rotated90());
+        assertEquals(new GrayscaleImage(new double[][]{{2},{3}}), smallWide.rotated90().mirrored().cropped(1, 0, 1, 2));
+    }
+
+    @Test
+    void blockedCopyOfLargeRotation(){
+        var data = new double[150][130];
+        for (int row = 0; row < data.length; row++) {
+            for (int col = 0; col < data[row].length; col++) {
+                data[row][col] = row * 1000 + col;
+            }
+        }
+        var rotated = new GrayscaleImage(data, PixelFormat.FLOAT).rotated90().cropped(3, 5, 140, 120);
+        var compact = rotated.compacted();
+        assertEquals(rotated, compact);
+        // row 3 of the clockwise rotation is column 3 of the original, read bottom up
+        assertEquals(data[149 - 5][3], compact.getPixel(0, 0));
+        assertEquals(rotated.normalized(), rotated.compacted().normalized());
+    }
+
+    @Test
+    void fullPassesOverRotationsMatchTheCopy(@TempDir Path dir) throws IOException {
+        var data = new double[150][130];
+        for (int row = 0; row < data.length; row++) {
+            for (int col = 0; col < data[row].length; col++) {
+                data[row][col] = (row * 7 + col * 13) % 256;
+            }
+        }
+        var rotated = new GrayscaleImage(data, PixelFormat.BYTE).rotated270();
+        var expected = new double[130][150];
+        for (int row = 0; row < 130; row++) {
+            for (int col = 0; col < 150; col++) {
+                expected[row][col] = data[col][129 - row];
+            }
+        }
+        var compact = new GrayscaleImage(expected, PixelFormat.BYTE);
+        assertEquals(compact, rotated);
+        assertEquals(compact.contentHash(), rotated.contentHash());
+        assertEquals(compact.histogram().percentile(50), rotated.histogram().percentile(50));
+        assertEquals(compact.boxBlurred(2), rotated.boxBlurred(2));
+
+        rotated.savePGM(dir.resolve("rotated.pgm"));
+        compact.savePGM(dir.resolve("compact.pgm"));
+        assertArrayEquals(Files.readAllBytes(dir.resolve("compact.pgm")), Files.readAllBytes(dir.resolve("rotated.pgm")));
+        rotated.savePNG(dir.resolve("rotated.png").toFile());
+        assertEquals(compact, new GrayscaleImage(dir.resolve("rotated.png")));
+    }
+}
@@ -0,0 +1,69 @@
+package assign01;
+
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    private GrayscaleImage ramp;
+
+    @BeforeEach
+    void setUp() {
+        // 0, 10, 20 ... 90 once each
+        ramp = new GrayscaleImage(new double[][]{{0, 10, 20, 30, 40}, {50, 60, 70, 80, 90}}, PixelFormat.BYTE);
+    }
+
+    @Test
+    void countsMinMaxAndPercentiles() {
+        var histogram = ramp.histogram();
+        assertSame(histogram, ramp.histogram());
+        assertEquals(10, histogram.total());
+        assertEquals(1, histogram.count(30));
+        assertEquals(0, histogram.count(31));
+        assertEquals(0, histogram.min());
+        assertEquals(90, histogram.max());
+        assertEquals(0, histogram.percentile(0));
+        assertEquals(40, histogram.percentile(50));
+        assertEquals(80, histogram.percentile(90));
+        assertEquals(90, histogram.percentile(100));
+        assertThrows(IllegalArgumentException.class, () -> histogram.percentile(101));
+    }
+
+    @Test
+    void valuesOutsideRangeAreClampedIntoEndBins() {
+        var histogram = new GrayscaleImage(new double[][]{{-5, 0.5, 254.9, 1000}}).histogram();
+        assertEquals(2, histogram.count(0));
+        assertEquals(1, histogram.count(254));
+        assertEquals(1, histogram.count(255));
+        assertEquals(-5, histogram.min());
+        assertEquals(1000, histogram.max());
+    }
+
+    @Test
+    void equalizedSpreadsToFullRange() {
+        var equalized = ramp.equalized();
+        assertEquals(PixelFormat.BYTE, equalized.format());
+        assertEquals(0, equalized.getPixel(0, 0));
+        assertEquals(255, equalized.getPixel(4, 1));
+        assertEquals(Math.round(255.0 * 4 / 9), equalized.getPixel(4, 0));
+
+        var flat = new GrayscaleImage(new double[][]{{7, 7}, {7, 7}});
+        assertEquals(flat, flat.equalized());
+    }
+
+    @Test
+    void contrastStretchedClampsAndScales() {
+        var stretched = ramp.contrastStretched(10, 60);
+        assertEquals(0, stretched.getPixel(0, 0));
+        assertEquals(0, stretched.getPixel(1, 0));
+        assertEquals(Math.round(255.0 * 30 / 50), stretched.getPixel(4, 0));
+        assertEquals(255, stretched.getPixel(1, 1));
+
+        var exact = ramp.converted(PixelFormat.DOUBLE).contrastStretched(10, 60);
+        assertEquals(255.0 * 30 / 50, exact.getPixel(4, 0), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> ramp.contrastStretched(5, 5));
+    }
+}
@@ -0,0 +1,107 @@
+package assign01;
+
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageDiffTest {
+
+    private GrayscaleImage wide;
+
+    @BeforeEach
+    void setUp() {
+        wide = new GrayscaleImage(new double[][]{{1,2,3,4},{5,6,7,8},{9,10,11,12}});
+    }
+
+    @Test
+    void identicalImages() {
+        var diff = wide.diff(wide.converted(PixelFormat.BYTE));
+        assertFalse(diff.hasChanges());
+        assertTrue(diff.complete());
+        assertEquals(12, diff.comparedPixels());
+        assertEquals(0, diff.maxError());
+        assertEquals(0, diff.meanError());
+        assertEquals(Double.POSITIVE_INFINITY, diff.psnr());
+        assertNull(diff.changedRegion());
+        assertNull(diff.diffImage());
+        assertTrue(wide.matches(wide.mirrored().mirrored(), 0));
+    }
+
+    @Test
+    void statisticsAndRegion() {
+        var changed = new GrayscaleImage(new double[][]{{1,2,3,4},{5,6,9,8},{9,13,11,12.5}});
+        var diff = wide.diff(changed, 0.5, false, true);
+        // differences 2, 3 and 0.5, the last one within the tolerance
+        assertEquals(2, diff.changedPixels());
+        assertEquals(new ImageDiff.Region(1, 1, 2, 2), diff.changedRegion());
+        assertEquals(3, diff.maxError());
+        assertEquals(5.5 / 12, diff.meanError(), 1e-12);
+        assertEquals(13.25 / 12, diff.meanSquaredError(), 1e-12);
+        assertEquals(10 * Math.log10(255 * 255 / (13.25 / 12)), diff.psnr(), 1e-9);
+        assertEquals(new GrayscaleImage(new double[][]{{0,0,0,0},{0,0,2,0},{0,3,0,0.5}}), diff.diffImage());
+        assertEquals(PixelFormat.DOUBLE, diff.diffImage().format());
+
+        assertTrue(wide.matches(changed, 3));
+        assertFalse(wide.matches(changed, 2.5));
+        assertFalse(wide.matches(wide.cropped(0, 0, 3, 3), 100));
+    }
+
+    @Test
+    void byteDiffImageStaysByte() {
+        var a = wide.converted(PixelFormat.BYTE);
+        var b = wide.mirrored().converted(PixelFormat.BYTE);
+        var diff = a.diff(b, 0, false, true);
+        assertEquals(PixelFormat.BYTE, diff.diffImage().format());
+        assertEquals(3, diff.maxError());
+        assertEquals(new ImageDiff.Region(0, 0, 4, 3), diff.changedRegion());
+    }
+
+    @Test
+    void stopsAtFirstChange() {
+        var data = new double[400][300];
+        var changedData = new double[400][300];
+        changedData[10][20] = 50;
+        changedData[390][5] = 1;
+        var expected = new GrayscaleImage(data);
+        var actual = new GrayscaleImage(changedData);
+
+        var quick = expected.diff(actual, 0, true, false);
+        assertTrue(quick.hasChanges());
+        assertFalse(quick.complete());
+        assertTrue(quick.comparedPixels() < 400 * 300);
+
+        var full = expected.diff(actual, 0, false, false);
+        assertTrue(full.complete());
+        assertEquals(2, full.changedPixels());
+        assertEquals(new ImageDiff.Region(10, 5, 16, 381), full.changedRegion());
+        assertThrows(IllegalArgumentException.class, () -> expected.diff(actual, 0, true, true));
+        assertThrows(IllegalArgumentException.class, () -> expected.diff(actual.cropped(0, 0, 3, 3)));
+    }
+
+    @Test
+    void parallelDiffMatchesSequential() {
+        var data = new double[500][300];
+        var other = new double[500][300];
+        for (int row = 0; row < data.length; row++) {
+            for (int col = 0; col < data[row].length; col++) {
+                data[row][col] = (row * 7 + col * 3) % 256;
+                other[row][col] = (row * 7 + col * 3 + (row * col) % 5) % 256;
+            }
+        }
+        var sequential = new GrayscaleImage(data).diff(new GrayscaleImage(other), 1, false, true);
+        var pool = new ForkJoinPool(4);
+        try {
+            var parallel = new GrayscaleImage(data).parallel(pool).diff(new GrayscaleImage(other), 1, false, true);
+            assertEquals(sequential.toString(), parallel.toString());
+            assertEquals(sequential.meanSquaredError(), parallel.meanSquaredError());
+            assertEquals(sequential.diffImage(), parallel.diffImage());
+            assertTrue(parallel.diffImage().isParallel());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package assign01;
+
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.IIOException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageLoaderTest {
+
+    private final GrayscaleImage image = new GrayscaleImage(new double[][]{{10, 20, 30}, {40, 50, 60}});
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final CountDownLatch stalled = new CountDownLatch(1);
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        var png = new ByteArrayOutputStream();
+        image.savePNG(png, 6);
+        byte[] body = png.toByteArray();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(handlers);
+        server.createContext("/slow", exchange -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.createContext("/stalled", exchange -> {
+            try {
+                stalled.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.createContext("/stalledBody", exchange -> {
+            try {
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body, 0, body.length / 2);
+                exchange.getResponseBody().flush();
+                stalled.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        stalled.countDown();
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private URL url(String path) throws IOException {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path).toURL();
+    }
+
+    private static void awaitSlots(ImageLoader loader, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (loader.availableSlots() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, loader.availableSlots());
+    }
+
+    @Test
+    void loadsFilesAndFileUrls(@TempDir Path dir) throws Exception {
+        var file = dir.resolve("image.png");
+        image.savePNG(file.toFile());
+        try (var loader = new ImageLoader(2)) {
+            assertEquals(image, loader.load(file).get());
+            assertEquals(image, loader.load(file.toUri().toURL()).get());
+        }
+    }
+
+    @Test
+    void limitsConcurrentLoads() throws Exception {
+        try (var loader = new ImageLoader(2)) {
+            var loads = new ArrayList<CompletableFuture<GrayscaleImage>>();
+            for (int i = 0; i < 8; i++) {
+                loads.add(loader.load(url("/slow")));
+            }
+            List<GrayscaleImage> images = ImageLoader.allOf(loads).get(10, TimeUnit.SECONDS);
+            assertEquals(8, images.size());
+            images.forEach(loaded -> assertEquals(image, loaded));
+            assertTrue(maxActive.get() <= 2, "at most 2 requests at once, saw " + maxActive.get());
+        }
+    }
+
+    @Test
+    void runsOnACallerExecutor() throws Exception {
+        var executor = Executors.newFixedThreadPool(3);
+        try (var loader = new ImageLoader(3, executor)) {
+            assertEquals(image, loader.load(url("/slow")).get(10, TimeUnit.SECONDS));
+        } finally {
+            assertFalse(executor.isShutdown());
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void timesOutAndFreesTheSlot() throws Exception {
+        try (var loader = new ImageLoader(1)) {
+            var stuck = loader.load(url("/stalled"), Duration.ofMillis(200));
+            var error = assertThrows(ExecutionException.class, () -> stuck.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, error.getCause());
+            awaitSlots(loader, 1);
+            assertEquals(image, loader.load(url("/slow")).get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void timesOutWhenTheBodyStalls() throws Exception {
+        try (var loader = new ImageLoader(1)) {
+            var stuck = loader.load(url("/stalledBody"), Duration.ofMillis(200));
+            var error = assertThrows(ExecutionException.class, () -> stuck.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, error.getCause());
+            awaitSlots(loader, 1);
+        }
+    }
+
+    @Test
+    void findsSocketTimeoutsWrappedByTheDecoder() {
+        var wrapped = new IIOException("Error reading PNG image data", new SocketTimeoutException("Read timed out"));
+        assertTrue(ImageLoader.causedBySocketTimeout(wrapped));
+        assertTrue(ImageLoader.causedBySocketTimeout(new SocketTimeoutException("Read timed out")));
+        assertFalse(ImageLoader.causedBySocketTimeout(new IOException("Unsupported image format")));
+    }
+
+    @Test
+    void cancelFreesTheSlot() throws Exception {
+        try (var loader = new ImageLoader(1)) {
+            var stuck = loader.load(url("/stalled"));
+            var waiting = loader.load(url("/slow"));
+            awaitSlots(loader, 0);
+            assertTrue(waiting.cancel(true));
+            assertTrue(stuck.cancel(true));
+            assertThrows(CancellationException.class, stuck::join);
+            awaitSlots(loader, 1);
+            assertEquals(0, maxActive.get());
+        }
+    }
+
+    @Test
+    void allOfFailsFastAndCancelsTheRest(@TempDir Path dir) throws Exception {
+        try (var loader = new ImageLoader(4)) {
+            var stuck = loader.load(url("/stalled"));
+            var missing = loader.load(dir.resolve("missing.png"));
+            var error = assertThrows(ExecutionException.class,
+                    () -> ImageLoader.allOf(List.of(stuck, missing)).get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, error.getCause());
+            // the combined future can fail a moment before the cancellation reaches stuck
+            assertThrows(CancellationException.class, () -> stuck.get(10, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package assign01;
+
+import assign01.ImageMetrics.Operation;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.JMX;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+class ImageMetricsTest {
+
+    @Test
+    void offByDefault() {
+        assumeFalse(ImageMetrics.ENABLED, "metrics are on in this JVM");
+        assertNull(ImageMetrics.start(Operation.NORMALIZE));
+        var image = new GrayscaleImage(new double[][]{{10, 20}, {30, 40}});
+        assertSame(image, ImageMetrics.stop(null, image));
+        assertEquals(image.normalized(), new GrayscaleImage(new double[][]{{50.8, 101.6}, {152.4, 203.2}}));
+    }
+
+    @Test
+    void countsCallsPixelsAndBytes() {
+        var metrics = new ImageMetrics();
+        for (int i = 0; i < 3; i++) {
+            metrics.end(metrics.begin(Operation.RESIZE), 100, 400);
+        }
+        var resize = metrics.get(Operation.RESIZE);
+        assertEquals("resize", resize.getOperation());
+        assertEquals(3, resize.getCount());
+        assertEquals(300, resize.getPixels());
+        assertEquals(1200, resize.getBytesAllocated());
+        assertTrue(resize.getMaxMillis() >= resize.getP50Millis());
+        assertEquals(0, metrics.get(Operation.DECODE).getCount());
+
+        resize.reset();
+        assertEquals(0, resize.getCount());
+        assertEquals(0, resize.getPixels());
+    }
+
+    @Test
+    void publishedOverJmx() throws Exception {
+        var metrics = new ImageMetrics();
+        var server = MBeanServerFactory.newMBeanServer();
+        metrics.register(server);
+        metrics.end(metrics.begin(Operation.ENCODE_PNG), 6, 6);
+
+        var name = new ObjectName("assign01:type=ImageMetrics,operation=encode_png");
+        var proxy = JMX.newMXBeanProxy(server, name, OperationMetricsMXBean.class);
+        assertEquals(1, proxy.getCount());
+        assertEquals(6L, server.getAttribute(name, "BytesAllocated"));
+        assertEquals(Operation.values().length, server.queryNames(new ObjectName("assign01:type=ImageMetrics,*"), null).size());
+    }
+
+    @Test
+    void emitsFlightRecorderEvents(@TempDir Path dir) throws Exception {
+        var metrics = new ImageMetrics();
+        Path file = dir.resolve("metrics.jfr");
+        try (var recording = new Recording()) {
+            recording.enable("assign01.ImageOperation");
+            recording.start();
+            metrics.end(metrics.begin(Operation.CONVOLVE), 12, 48);
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("assign01.ImageOperation"))
+                .toList();
+        assertEquals(1, events.size());
+        assertEquals("convolve", events.get(0).getString("operation"));
+        assertEquals(12, events.get(0).getLong("pixels"));
+        assertEquals(48, events.get(0).getLong("bytesAllocated"));
+    }
+}
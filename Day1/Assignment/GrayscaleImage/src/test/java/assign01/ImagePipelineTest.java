@@ -0,0 +1,55 @@
+package assign01;
+
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImagePipelineTest {
+
+    private GrayscaleImage wide;
+    private GrayscaleImage tall;
+
+    @BeforeEach
+    void setUp() {
+        wide = new GrayscaleImage(new double[][]{{1,2,3,4},{5,6,7,8},{9,10,11,12}});
+        tall = new GrayscaleImage(new double[][]{{1,2},{3,4},{5,6}}, PixelFormat.BYTE);
+    }
+
+    @Test
+    void matchesEagerCropperChain() {
+        var eager = wide.squarified().normalized().mirrored();
+        var lazy = wide.pipeline().squarified().normalized().mirrored().materialize();
+        assertEquals(eager, lazy);
+        assertEquals(eager.format(), lazy.format());
+
+        assertEquals(tall.squarified().normalized().mirrored(),
+                tall.pipeline().squarified().normalized().mirrored().materialize());
+    }
+
+    @Test
+    void cropAfterMirror() {
+        var eager = wide.mirrored().cropped(1, 1, 2, 2).mirrored().cropped(0, 1, 1, 2);
+        var lazy = wide.pipeline().mirrored().cropped(1, 1, 2, 2).mirrored().cropped(0, 1, 1, 2).materialize();
+        assertEquals(eager, lazy);
+    }
+
+    @Test
+    void normalizeAfterScale() {
+        var lazy = wide.pipeline().scaled(3).cropped(0, 0, 2, 2).normalized().materialize();
+        assertEquals(127, lazy.averageBrightness(), 127*.001);
+    }
+
+    @Test
+    void emptyPipelineCopiesSource() {
+        assertEquals(tall, tall.pipeline().materialize());
+        assertEquals(PixelFormat.BYTE, tall.pipeline().materialize().format());
+    }
+
+    @Test
+    void cropOutOfBoundsThrows() {
+        assertThrows(IllegalArgumentException.class, () -> wide.pipeline().squarified().cropped(0, 1, 3, 1));
+        assertThrows(IllegalArgumentException.class, () -> wide.pipeline().cropped(1, 0, 1, Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,117 @@
+package assign01;
+
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageServerTest {
+
+    private final GrayscaleImage image = new GrayscaleImage(new double[][]{{10, 20, 30}, {40, 50, 60}});
+    private final HttpClient client = HttpClient.newHttpClient();
+    private ImageServer server;
+
+    @BeforeEach
+    void startServer(@TempDir Path root) throws IOException {
+        Files.createDirectories(root.resolve("photos"));
+        image.savePNG(root.resolve("photos/wide.png").toFile());
+        image.savePGM(root.resolve("wide.pgm"));
+        Files.writeString(root.resolve("notAnImage.png"), "hello");
+        server = ImageServer.start(root, 0, 1 << 20, 1 << 20);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+        client.close();
+    }
+
+    private HttpResponse<byte[]> get(String pathAndQuery) throws IOException, InterruptedException {
+        var uri = URI.create("http://127.0.0.1:" + server.port() + pathAndQuery);
+        return client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static GrayscaleImage decode(HttpResponse<byte[]> response) throws IOException {
+        assertEquals(200, response.statusCode());
+        assertEquals("image/png", response.headers().firstValue("Content-Type").orElseThrow());
+        return new GrayscaleImage(new ByteArrayInputStream(response.body()));
+    }
+
+    /**
+     * @return what the server should send back: the edit saved to and read back from a PNG
+     */
+    private static GrayscaleImage asPNG(GrayscaleImage edited) throws IOException {
+        var png = new ByteArrayOutputStream();
+        edited.savePNG(png, 1);
+        return new GrayscaleImage(new ByteArrayInputStream(png.toByteArray()));
+    }
+
+    @Test
+    void servesTheCropperChain() throws Exception {
+        var expected = asPNG(image.squarified().normalized().mirrored());
+        assertEquals(expected, decode(get("/image?path=photos/wide.png&ops=squarify,normalize,mirror")));
+        assertEquals(expected, decode(get("/image?path=photos%2Fwide.png&ops=squarify,normalize,mirror")));
+        assertEquals(asPNG(image.squarified().normalized().mirrored()),
+                decode(get("/image?path=wide.pgm&ops=squarify,normalize,mirror")));
+        assertEquals(asPNG(image.mirrored().cropped(0, 1, 2, 2)), decode(get("/image?path=wide.pgm&ops=mirror,crop:0:1:2:2")));
+        assertEquals(image, decode(get("/image?path=wide.pgm")));
+    }
+
+    @Test
+    void decodesHotSourcesOnce() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            decode(get("/image?path=photos/wide.png&ops=mirror"));
+        }
+        decode(get("/image?path=photos/wide.png&ops=normalize"));
+        var stats = server.sourceStats();
+        assertEquals(1, stats.misses());
+        assertEquals(3, stats.hits());
+        assertEquals(1, stats.entries());
+
+        String text = new String(get("/stats").body());
+        assertTrue(text.startsWith("requests 4 errors 0"), text);
+        assertTrue(text.contains("p99="), text);
+    }
+
+    @Test
+    void rejectsBadRequests() throws Exception {
+        assertEquals(400, get("/image").statusCode());
+        assertEquals(400, get("/image?path=wide.pgm&ops=blur").statusCode());
+        assertEquals(400, get("/image?path=wide.pgm&ops=crop:0:0:9:9").statusCode());
+        assertEquals(400, get("/image?path=wide.pgm&ops=crop:0:x:1:1").statusCode());
+        assertEquals(400, get("/image?path=wide.pgm&ops=crop:1:0:1:2147483647").statusCode());
+        assertEquals(403, get("/image?path=../outside.png").statusCode());
+        assertEquals(404, get("/image?path=missing.png").statusCode());
+        assertEquals(422, get("/image?path=notAnImage.png").statusCode());
+        assertTrue(new String(get("/stats").body()).startsWith("requests 8 errors 8"));
+    }
+
+    @Test
+    void listensOnLoopbackOnly() {
+        assertTrue(server.address().getAddress().isLoopbackAddress());
+    }
+
+    @Test
+    void loadGeneratorReportsThroughput() throws Exception {
+        var uri = URI.create("http://127.0.0.1:" + server.port() + "/image?path=wide.pgm&ops=squarify,normalize,mirror");
+        var result = LoadGenerator.run(uri, 4, Duration.ofMillis(500), Duration.ofMillis(100));
+        assertTrue(result.requests() > 0);
+        assertEquals(0, result.errors());
+        assertEquals(result.requests(), result.latencies().count());
+        assertTrue(result.requestsPerSecond() > 0);
+    }
+}
@@ -0,0 +1,106 @@
+package assign01;
+
+import assign01.ImageMetrics.Operation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs in the metrics surefire execution, with -Dassign01.metrics=true
+ */
+@Tag("metrics")
+class InstrumentedOperationsTest {
+
+    private final GrayscaleImage wide = new GrayscaleImage(new double[][]{{1,2,3,4},{5,6,7,8},{9,10,11,12}});
+    private final GrayscaleImage wideBytes = wide.converted(PixelFormat.BYTE);
+    private ImageMetrics metrics;
+
+    @BeforeEach
+    void resetMetrics() {
+        assumeTrue(ImageMetrics.ENABLED, "metrics are off in this JVM");
+        metrics = ImageMetrics.global();
+        for (Operation operation : Operation.values()) {
+            metrics.get(operation).reset();
+        }
+    }
+
+    private void assertRecorded(Operation operation, long count, long pixels, long bytes) {
+        var recorded = metrics.get(operation);
+        assertEquals(count, recorded.getCount(), operation + " calls");
+        assertEquals(pixels, recorded.getPixels(), operation + " pixels");
+        assertEquals(bytes, recorded.getBytesAllocated(), operation + " bytes");
+    }
+
+    @Test
+    void normalizedRecordsOneCall() {
+        wideBytes.normalized();
+        // a BYTE image normalizes into FLOAT
+        assertRecorded(Operation.NORMALIZE, 1, 12, 12 * 4);
+        assertRecorded(Operation.COPY, 0, 0, 0);
+
+        wide.normalized();
+        assertRecorded(Operation.NORMALIZE, 2, 24, 12 * 4 + 12 * 8);
+    }
+
+    @Test
+    void pixelOperationsAreTagged() {
+        wide.boxBlurred(1);
+        assertRecorded(Operation.CONVOLVE, 1, 12, 12 * 8);
+        wideBytes.resized(2, 2);
+        assertRecorded(Operation.RESIZE, 1, 4, 4);
+        wideBytes.compacted();
+        wide.converted(PixelFormat.FLOAT);
+        assertRecorded(Operation.COPY, 2, 24, 12 + 12 * 4);
+        wide.pipeline().squarified().mirrored().materialize();
+        assertRecorded(Operation.PIPELINE, 1, 9, 9 * 8);
+        wideBytes.contrastStretched(2, 10);
+        assertRecorded(Operation.TONE_MAP, 1, 12, 12);
+        wide.diff(wide.mirrored(), 0, false, true);
+        assertRecorded(Operation.DIFF, 1, 12, 12 * 8);
+    }
+
+    @Test
+    void cachedResultsAreRecordedOnce() {
+        wide.contentHash();
+        wide.contentHash();
+        assertRecorded(Operation.HASH, 1, 12, 0);
+        wide.histogram();
+        wide.histogram();
+        assertRecorded(Operation.HISTOGRAM, 1, 12, 0);
+    }
+
+    @Test
+    void encodingAndDecoding() throws IOException {
+        var png = new ByteArrayOutputStream();
+        wideBytes.savePNG(png, 1);
+        assertRecorded(Operation.ENCODE_PNG, 1, 12, 12);
+        assertEquals(wideBytes, new GrayscaleImage(new ByteArrayInputStream(png.toByteArray())));
+        assertRecorded(Operation.DECODE, 1, 12, 12);
+
+        var pgm = new ByteArrayOutputStream();
+        wideBytes.savePGM(Channels.newChannel(pgm));
+        assertEquals(1, metrics.get(Operation.ENCODE_PGM).getCount());
+        GrayscaleImage.readPGM(Channels.newChannel(new ByteArrayInputStream(pgm.toByteArray())));
+        assertRecorded(Operation.DECODE, 2, 24, 24);
+    }
+
+    @Test
+    void publishedOnThePlatformMBeanServer() throws Exception {
+        wide.normalized();
+        var server = ManagementFactory.getPlatformMBeanServer();
+        var name = new ObjectName("assign01:type=ImageMetrics,operation=normalize");
+        assertTrue(server.isRegistered(name));
+        assertEquals(1L, server.getAttribute(name, "Count"));
+        assertEquals(12L * 8, server.getAttribute(name, "BytesAllocated"));
+    }
+}
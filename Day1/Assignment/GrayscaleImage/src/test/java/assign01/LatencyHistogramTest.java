@@ -0,0 +1,48 @@
+package assign01;
+
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketsCoverEveryValueInOrder() {
+        long previous = -1;
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 33, 1000, 1 << 20, Long.MAX_VALUE / 3, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(LatencyHistogram.lowerBound(bucket) <= value);
+            assertTrue(bucket >= previous);
+            previous = bucket;
+        }
+        for (int bucket = 1; bucket < LatencyHistogram.bucket(Long.MAX_VALUE); bucket++) {
+            assertEquals(bucket, LatencyHistogram.bucket(LatencyHistogram.lowerBound(bucket)));
+            assertEquals(bucket - 1, LatencyHistogram.bucket(LatencyHistogram.lowerBound(bucket) - 1));
+        }
+    }
+
+    @Test
+    void percentilesAreWithinABucket() {
+        var histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(10_000, histogram.count());
+        assertEquals(10_000_000, histogram.maxNanos());
+        assertEquals(5_000_500, histogram.meanNanos(), 1e-6);
+        assertEquals(5_000_000, histogram.percentileNanos(50), 5_000_000 * 0.07);
+        assertEquals(9_900_000, histogram.percentileNanos(99), 9_900_000 * 0.07);
+        assertEquals(10_000_000, histogram.percentileNanos(100), 10_000_000 * 0.07);
+        assertTrue(histogram.percentileNanos(100) <= histogram.maxNanos());
+    }
+
+    @Test
+    void emptyHistogram() {
+        var histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentileNanos(99));
+        assertEquals(0, histogram.meanNanos());
+        histogram.record(-5);
+        assertEquals(0, histogram.maxNanos());
+    }
+}
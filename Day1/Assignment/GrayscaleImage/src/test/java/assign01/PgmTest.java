@@ -0,0 +1,46 @@
+package assign01;
+
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PgmTest {
+
+    private static Pgm.Header parse(String header) throws IOException {
+        return Pgm.parse(ByteBuffer.wrap(header.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    void parsesWrittenHeader() throws IOException {
+        byte[] header = Pgm.header(640, 480);
+        assertEquals(new Pgm.Header(640, 480, 255, header.length), Pgm.parse(ByteBuffer.wrap(header)));
+    }
+
+    @Test
+    void skipsCommentsAndExtraWhitespace() throws IOException {
+        var header = "P5 # made by hand\n  12\t7\r\n# max\n200\n";
+        assertEquals(new Pgm.Header(12, 7, 200, header.length()), parse(header + "\u0000ÿ"));
+    }
+
+    @Test
+    void pixelsMayStartWithWhitespaceBytes() throws IOException {
+        var header = "P5\n2 1\n255\n";
+        // the first pixel is 10, a newline byte, and must not be skipped as part of the header
+        assertEquals(header.length(), parse(header + "\n\n").length());
+    }
+
+    @Test
+    void rejectsUnsupportedFiles() {
+        assertThrows(IOException.class, () -> parse("P2\n2 2\n255\n"));
+        assertThrows(IOException.class, () -> parse("P5\n2 2\n65535\n"));
+        assertThrows(IOException.class, () -> parse("P5\n0 2\n255\n"));
+        assertThrows(IOException.class, () -> parse("P5\n2x 2\n255\n"));
+        assertThrows(IOException.class, () -> parse("P5\n2 2\n"));
+        assertThrows(IOException.class, () -> parse("P5\n# " + "x".repeat(Pgm.MAX_HEADER_BYTES) + "\n2 2\n255\n"));
+    }
+}
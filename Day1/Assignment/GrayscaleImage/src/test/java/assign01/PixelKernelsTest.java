@@ -0,0 +1,97 @@
+package assign01;
+
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PixelKernelsTest {
+
+    private static double[] ramp(int count) {
+        double[] row = new double[count];
+        for (int i = 0; i < count; i++) {
+            row[i] = i * 0.5;
+        }
+        return row;
+    }
+
+    @Test
+    void sumMatchesScalar() {
+        for (int count : new int[]{0, 1, 3, 8, 37, 1000}) {
+            double[] row = ramp(count);
+            assertEquals(PixelKernels.scalarSum(row, count), PixelKernels.sum(row, count), 1e-9);
+        }
+    }
+
+    @Test
+    void sumsOfNonIntegerPixelsMatchScalarExactly() {
+        var random = new java.util.Random(6);
+        for (int count : new int[]{0, 1, 3, 4, 7, 8, 37, 1000, 4099}) {
+            double[] row = new double[count];
+            for (int i = 0; i < count; i++) {
+                row[i] = random.nextDouble() * 255;
+            }
+            assertEquals(PixelKernels.scalarSum(row, count), PixelKernels.sum(row, count));
+            assertEquals(PixelKernels.scalarSumOfSquares(row, count), PixelKernels.sumOfSquares(row, count));
+        }
+    }
+
+    @Test
+    void sumIsCompensated() {
+        double[] row = new double[10_000];
+        java.util.Arrays.fill(row, 0.1);
+        assertEquals(1000.0, PixelKernels.sum(row, row.length));
+        assertEquals(1000.0, PixelKernels.scalarSum(row, row.length));
+    }
+
+    @Test
+    void sumOfInfinitePixelsIsInfinite() {
+        double[] row = ramp(37);
+        row[5] = Double.POSITIVE_INFINITY;
+        assertEquals(Double.POSITIVE_INFINITY, PixelKernels.sum(row, row.length));
+        assertEquals(Double.POSITIVE_INFINITY, PixelKernels.scalarSum(row, row.length));
+    }
+
+    @Test
+    void scaleMatchesScalar() {
+        double[] vector = ramp(37);
+        double[] scalar = ramp(37);
+        PixelKernels.scale(vector, 37, 1.7);
+        PixelKernels.scalarScale(scalar, 37, 1.7);
+        assertArrayEquals(scalar, vector);
+    }
+
+    @Test
+    void absDiffAndSumOfSquaresMatchScalar() {
+        double[] a = ramp(37);
+        double[] b = ramp(37);
+        PixelKernels.scale(b, 37, -0.3);
+        double[] vector = new double[37];
+        double[] scalar = new double[37];
+        PixelKernels.absDiff(a, b, vector, 37);
+        PixelKernels.scalarAbsDiff(a, b, scalar, 37);
+        assertArrayEquals(scalar, vector);
+        assertEquals(PixelKernels.scalarSumOfSquares(scalar, 37), PixelKernels.sumOfSquares(vector, 37), 1e-9);
+    }
+
+    @Test
+    void mismatchFindsFirstDifference() {
+        double[] a = ramp(37);
+        double[] b = ramp(37);
+        assertEquals(-1, PixelKernels.mismatch(a, b, 37));
+        b[30] = -1;
+        b[35] = -1;
+        assertEquals(30, PixelKernels.mismatch(a, b, 37));
+        assertEquals(-1, PixelKernels.mismatch(a, b, 30));
+    }
+
+    @Test
+    void mismatchUsesNumericEquality() {
+        double[] a = {0.0, 1, 2, 3, 4, 5, 6, 7, 8};
+        double[] b = {-0.0, 1, 2, 3, 4, 5, 6, 7, 8};
+        assertEquals(-1, PixelKernels.mismatch(a, b, a.length));
+        a[8] = Double.NaN;
+        b[8] = Double.NaN;
+        assertEquals(8, PixelKernels.mismatch(a, b, a.length));
+    }
+}
@@ -0,0 +1,73 @@
+package assign01;
+
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResamplerTest {
+
+    private GrayscaleImage square;
+
+    @BeforeEach
+    void setUp() {
+        square = new GrayscaleImage(new double[][]{{1,2,3,4},{5,6,7,8},{9,10,11,12},{13,14,15,16}});
+    }
+
+    @Test
+    void areaHalvingAverages2x2Blocks() {
+        var half = square.resized(2, 2);
+        assertEquals(new GrayscaleImage(new double[][]{{3.5, 5.5},{11.5, 13.5}}), half);
+        assertEquals(square.averageBrightness(), square.resized(1, 1).getPixel(0, 0), 1e-9);
+    }
+
+    @Test
+    void areaHandlesFractionalCoverage() {
+        var row = new GrayscaleImage(new double[][]{{0, 3, 6}});
+        // each of the 2 output pixels covers 1.5 input pixels
+        assertEquals(new GrayscaleImage(new double[][]{{1, 5}}), row.resized(2, 1));
+    }
+
+    @Test
+    void bilinearInterpolatesBetweenCenters() {
+        var row = new GrayscaleImage(new double[][]{{0, 10}});
+        var wide = row.resized(4, 1, ResizeMode.BILINEAR);
+        assertEquals(new GrayscaleImage(new double[][]{{0, 2.5, 7.5, 10}}), wide);
+        assertEquals(square, square.resized(4, 4, ResizeMode.BILINEAR));
+        assertEquals(new GrayscaleImage(new double[][]{{7, 7},{7, 7}}),
+                new GrayscaleImage(new double[][]{{7}}).resized(2, 2, ResizeMode.BILINEAR));
+    }
+
+    @Test
+    void pyramidLevelsHalve() {
+        var wide = new GrayscaleImage(new double[5][12]);
+        assertEquals(4, wide.pyramidLevels());
+        assertSame(wide, wide.pyramidLevel(0));
+        assertEquals(6, wide.pyramidLevel(1).width());
+        assertEquals(2, wide.pyramidLevel(1).height());
+        assertEquals(1, wide.pyramidLevel(3).width());
+        assertEquals(1, wide.pyramidLevel(3).height());
+        assertSame(wide.pyramidLevel(2), wide.pyramidLevel(2));
+        assertEquals(square.resized(2, 2), square.pyramidLevel(1));
+        assertThrows(IllegalArgumentException.class, () -> wide.pyramidLevel(4));
+    }
+
+    @Test
+    void thumbnailKeepsAspectRatio() {
+        var data = new double[40][80];
+        for (int row = 0; row < 40; row++) {
+            Arrays.fill(data[row], 50);
+        }
+        var image = new GrayscaleImage(data, PixelFormat.BYTE);
+        var thumb = image.thumbnail(30);
+        assertEquals(30, thumb.width());
+        assertEquals(15, thumb.height());
+        assertEquals(PixelFormat.BYTE, thumb.format());
+        assertEquals(50, thumb.averageBrightness(), 1e-9);
+        assertEquals(20, image.thumbnail(20).width());
+        assertEquals(image, image.thumbnail(100));
+    }
+}
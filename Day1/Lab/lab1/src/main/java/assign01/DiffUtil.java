@@ -1,29 +1,172 @@
 package assign01;
 
+import java.util.Arrays;
+
 public class DiffUtil {
+    /** Arrays up to this long compare every pair, which beats copying and sorting them */
+    static final int BRUTE_FORCE_CUTOFF = 16;
+    /** int arrays at least this long are radix sorted instead of using Arrays.sort */
+    static final int RADIX_CUTOFF = 1 << 12;
+
     /*
      * @param arr -- input array of integers
      * @return The smallest difference (absolute value of subtraction) among every
      *         pair of integers in the input array. If the array contains less
      *         than two items, returns -1.
+     *         Differences are computed in long, so the result is exact even for
+     *         Integer.MIN_VALUE and Integer.MAX_VALUE
+     * Sorts a copy and compares neighbours, O(n log n), the input is not modified
      */
-    public static int findSmallestDiff(int[] a) {
-//        return 0;
+    public static long findSmallestDiff(int[] a) {
         if (a.length < 2) {
             return -1;
         }
+        if (a.length <= BRUTE_FORCE_CUTOFF) {
+            long diff = Long.MAX_VALUE;
+            for (int i = 0; i < a.length; i++) {
+                for (int j = i + 1; j < a.length; j++) {
+                    diff = Math.min(diff, Math.abs((long) a[i] - a[j]));
+                }
+            }
+            return diff;
+        }
 
-        int diff = a[0] - a[1];
+        int[] sorted = a.clone();
+        if (sorted.length >= RADIX_CUTOFF) {
+            radixSort(sorted);
+        } else {
+            Arrays.sort(sorted);
+        }
+        long diff = Long.MAX_VALUE;
+        for (int i = 1; i < sorted.length && diff > 0; i++) {
+            diff = Math.min(diff, (long) sorted[i] - sorted[i - 1]);
+        }
+        return diff;
+    }
 
-        for (int i = 0; i < a.length; i++) {
-            for (int j = i + 1; j < a.length; j++) {
-                int tmp_diff = a[i] - a[j];
+    /*
+     * @param arr -- input array of longs
+     * @return The smallest difference among every pair of longs in the input array,
+     *         or -1 if the array contains less than two items
+     *         A difference too large for a long (only possible between values of
+     *         opposite sign) counts as Long.MAX_VALUE
+     */
+    public static long findSmallestDiff(long[] a) {
+        if (a.length < 2) {
+            return -1;
+        }
+        if (a.length <= BRUTE_FORCE_CUTOFF) {
+            long diff = Long.MAX_VALUE;
+            for (int i = 0; i < a.length; i++) {
+                for (int j = i + 1; j < a.length; j++) {
+                    diff = Math.min(diff, distance(Math.min(a[i], a[j]), Math.max(a[i], a[j])));
+                }
+            }
+            return diff;
+        }
+
+        long[] sorted = a.clone();
+        Arrays.sort(sorted);
+        long diff = Long.MAX_VALUE;
+        for (int i = 1; i < sorted.length && diff > 0; i++) {
+            diff = Math.min(diff, distance(sorted[i - 1], sorted[i]));
+        }
+        return diff;
+    }
 
-                if (tmp_diff < diff)
-                    diff = tmp_diff;
+    /*
+     * @param arr -- input array of doubles
+     * @return The smallest difference among every pair of doubles in the input array,
+     *         or -1 if the array contains less than two items that aren't NaN
+     *         NaNs are ignored, equal values (including two equal infinities) differ by 0
+     */
+    public static double findSmallestDiff(double[] a) {
+        if (a.length <= BRUTE_FORCE_CUTOFF) {
+            double diff = Double.POSITIVE_INFINITY;
+            int numbers = 0;
+            for (int i = 0; i < a.length; i++) {
+                if (Double.isNaN(a[i])) {
+                    continue;
+                }
+                numbers++;
+                for (int j = i + 1; j < a.length; j++) {
+                    if (!Double.isNaN(a[j])) {
+                        diff = Math.min(diff, distance(Math.min(a[i], a[j]), Math.max(a[i], a[j])));
+                    }
+                }
             }
+            return numbers < 2 ? -1 : diff;
         }
 
+        double[] sorted = a.clone();
+        // NaNs sort to the end
+        Arrays.sort(sorted);
+        int numbers = sorted.length;
+        while (numbers > 0 && Double.isNaN(sorted[numbers - 1])) {
+            numbers--;
+        }
+        if (numbers < 2) {
+            return -1;
+        }
+        double diff = Double.POSITIVE_INFINITY;
+        for (int i = 1; i < numbers && diff > 0; i++) {
+            diff = Math.min(diff, distance(sorted[i - 1], sorted[i]));
+        }
         return diff;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return hi - lo for lo <= hi, or Long.MAX_VALUE if that overflows
+     */
+    private static long distance(long lo, long hi) {
+        long diff = hi - lo;
+        return diff < 0 ? Long.MAX_VALUE : diff;
+    }
+
+    /**
+     * @return hi - lo for lo <= hi, 0 if they are equal (even when infinite)
+     */
+    private static double distance(double lo, double hi) {
+        return lo == hi ? 0 : hi - lo;
+    }
+
+    /**
+     * Sorts a in ascending order with an LSD radix sort, one byte per pass from the lowest,
+     * O(n) with one scratch array. The sign bit is flipped so negatives sort first, and a
+     * pass is skipped when every value has the same byte there (e.g. the high bytes of small values)
+     */
+    static void radixSort(int[] a) {
+        int[] from = a;
+        int[] to = new int[a.length];
+        int[] counts = new int[256];
+        for (int shift = 0; shift < Integer.SIZE; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int value : from) {
+                counts[radixByte(value, shift)]++;
+            }
+            if (counts[radixByte(from[0], shift)] == from.length) {
+                continue;
+            }
+            // counts become the start of each byte's run
+            int start = 0;
+            for (int b = 0; b < counts.length; b++) {
+                int count = counts[b];
+                counts[b] = start;
+                start += count;
+            }
+            for (int value : from) {
+                to[counts[radixByte(value, shift)]++] = value;
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != a) {
+            System.arraycopy(from, 0, a, 0, a.length);
+        }
+    }
+
+    private static int radixByte(int value, int shift) {
+        return ((value ^ Integer.MIN_VALUE) >>> shift) & 0xFF;
+    }
+}
@@ -4,6 +4,9 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class TestFindSmallestDiff {
@@ -33,12 +36,62 @@ class TestFindSmallestDiff {
 
     @Test
     public void smallRandomArrayElements() {
-        assertEquals(-8, DiffUtil.findSmallestDiff(arr3));
+        assertEquals(4, DiffUtil.findSmallestDiff(arr3));
     }
 
     @Test
     public void randomNegativeElements(){
-        assertEquals(-11, DiffUtil.findSmallestDiff(arr4));
+        assertEquals(1, DiffUtil.findSmallestDiff(arr4));
+    }
+
+    @Test
+    public void extremesDontOverflow(){
+        assertEquals(4294967295L, DiffUtil.findSmallestDiff(new int[] {Integer.MIN_VALUE, Integer.MAX_VALUE}));
+        assertEquals(Long.MAX_VALUE, DiffUtil.findSmallestDiff(new long[] {Long.MIN_VALUE, Long.MAX_VALUE}));
+        assertEquals(1, DiffUtil.findSmallestDiff(new long[] {Long.MIN_VALUE, Long.MAX_VALUE, Long.MAX_VALUE - 1}));
+    }
+
+    @Test
+    public void largeArraysMatchBruteForce(){
+        var random = new Random(42);
+        for (int n : new int[] {17, 1000, 5000, 100_000}) {
+            int[] a = random.ints(n).toArray();
+            int[] copy = a.clone();
+            long expected = Long.MAX_VALUE;
+            int[] sorted = a.clone();
+            Arrays.sort(sorted);
+            for (int i = 1; i < n; i++) {
+                expected = Math.min(expected, (long) sorted[i] - sorted[i - 1]);
+            }
+            assertEquals(expected, DiffUtil.findSmallestDiff(a));
+            assertArrayEquals(copy, a);
+            assertEquals(expected, DiffUtil.findSmallestDiff(Arrays.stream(a).asLongStream().toArray()));
+        }
+        int[] withDuplicate = random.ints(10_000, -1000, 1_000_000).toArray();
+        withDuplicate[9_999] = withDuplicate[0];
+        assertEquals(0, DiffUtil.findSmallestDiff(withDuplicate));
+    }
+
+    @Test
+    public void radixSortSorts(){
+        int[] a = new Random(7).ints(50_000).toArray();
+        a[0] = Integer.MIN_VALUE;
+        a[1] = Integer.MAX_VALUE;
+        int[] expected = a.clone();
+        Arrays.sort(expected);
+        DiffUtil.radixSort(a);
+        assertArrayEquals(expected, a);
+    }
+
+    @Test
+    public void doubles(){
+        assertEquals(-1, DiffUtil.findSmallestDiff(new double[] {1.5, Double.NaN}));
+        assertEquals(0.25, DiffUtil.findSmallestDiff(new double[] {3, 1.5, Double.NaN, -2, 1.25}));
+        assertEquals(0, DiffUtil.findSmallestDiff(new double[] {Double.POSITIVE_INFINITY, 1, Double.POSITIVE_INFINITY}));
+        double[] large = new Random(3).doubles(1000).map(d -> d * 1000).toArray();
+        large[500] = Double.NaN;
+        large[999] = large[10] + 1e-9;
+        assertEquals(1e-9, DiffUtil.findSmallestDiff(large), 1e-12);
     }
 
 }
\ No newline at end of file